@@ -1,16 +1,26 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.service.MovieInfoFields;
 import com.reactivespring.service.MovieInfoService;
+import com.reactivespring.service.MovieInfoSort;
+import com.reactivespring.service.MovieInfoStreamHub;
+import com.reactivespring.service.StreamSource;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
+
+import java.util.List;
 
 @RestController
 @RequestMapping("/v1")
@@ -18,41 +28,117 @@ import reactor.core.publisher.Sinks;
 public class MoviesInfoController {
 
     public static final String MOVIEINFOS_URI = "/movieinfos";
+    public static final String APPLICATION_STREAM_SMILE_VALUE = "application/stream+x-jackson-smile";
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
+    public static final String NEXT_CURSOR = "X-Next-Cursor";
     private final MovieInfoService movieInfoService;
-    Sinks.Many<MovieInfo> moviesInfoSink = Sinks.many().replay().all();
+    private final MovieInfoStreamHub movieInfoStreamHub;
+
+    @Value("${movieInfoStream.source:LOCAL}")
+    private StreamSource streamSource;
+
+    @Value("${movieInfo.page.defaultLimit:100}")
+    private int defaultPageLimit;
+
+    @Value("${movieInfo.page.maxLimit:1000}")
+    private int maxPageLimit;
+
+    @Value("${movieInfo.search.maxLimit:100}")
+    private int maxSearchLimit;
+
+    @Value("${movieInfo.bulk.batchSize:500}")
+    private int bulkBatchSize;
+
+    @Value("${movieInfo.bulk.concurrency:4}")
+    private int bulkConcurrency;
 
 
     @PostMapping(MOVIEINFOS_URI)
     @ResponseStatus(HttpStatus.CREATED)
     public Mono<MovieInfo> addMovieInfo(@RequestBody @Valid MovieInfo movieInfo) {
         return movieInfoService.addMovieInfo(movieInfo)
-                .doOnNext(savedMovieInfo -> moviesInfoSink.tryEmitNext(savedMovieInfo));
+                .doOnNext(savedMovieInfo -> publishLocally(MovieInfoEvent.Type.INSERT, savedMovieInfo));
     }
 
+    // one NDJSON MovieInfo per line in, one result per record out, invalid records do not fail the stream
+    @PostMapping(value = MOVIEINFOS_URI + "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfoBulkResult> bulkAddMovieInfos(@RequestBody Flux<MovieInfo> movieInfos) {
+        return movieInfoService.bulkInsert(movieInfos, bulkBatchSize, bulkConcurrency,
+                inserted -> {
+                    if (streamSource == StreamSource.LOCAL) {
+                        movieInfoStreamHub.publishAll(MovieInfoEvent.Type.INSERT, inserted);
+                    }
+                });
+    }
+
+    // every listing is a bounded keyset page, the cursor for the next one comes back in NEXT_CURSOR
     @GetMapping(MOVIEINFOS_URI)
-    @ResponseStatus(HttpStatus.OK)
-    public Flux<MovieInfo> getAllMovies(@RequestParam(value="year",required = false) Integer year) {
-        if (year != null) {
-            return movieInfoService.getMovieByYear(year);
-        }
-        return movieInfoService.getAllMovies();
+    public Mono<ResponseEntity<List<MovieInfo>>> getAllMovies(@RequestParam(value="year",required = false) Integer year,
+                                                              @RequestParam(value="limit",required = false) Integer limit,
+                                                              @RequestParam(value="after",required = false) String after,
+                                                              @RequestParam(value="sort",required = false) String sort,
+                                                              @RequestParam(value="fields",required = false) String fields) {
+        var pageLimit = limit == null ? defaultPageLimit : Math.max(1, Math.min(limit, maxPageLimit));
+        return movieInfoService.getMoviesPage(year, MovieInfoSort.parse(sort), after, pageLimit, MovieInfoFields.parse(fields))
+                .map(page -> ResponseEntity.ok()
+                        .headers(headers -> {
+                            if (page.nextCursor() != null) {
+                                headers.set(NEXT_CURSOR, page.nextCursor());
+                            }
+                        })
+                        .body(page.movieInfos()));
+    }
+
+    // prefix and token search over names and cast, best matches first
+    @GetMapping(MOVIEINFOS_URI + "/search")
+    public Flux<MovieInfo> searchMovieInfos(@RequestParam("q") String query,
+                                            @RequestParam(value="limit", defaultValue = "10") int limit) {
+        return movieInfoService.search(query, Math.max(1, Math.min(limit, maxSearchLimit)));
     }
 
     @GetMapping("/movieinfos/id/{id}")
-    public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable("id") String id) {
-        return movieInfoService.getMovieById(id)
-                .map(ResponseEntity.ok()::body)
+    public Mono<ResponseEntity<MovieInfo>> getMovieInfoById(@PathVariable("id") String id,
+                                                            @RequestParam(value="fields",required = false) String fields) {
+        // a matching If-None-Match is answered with a 304 before the body is written
+        var selected = MovieInfoFields.parse(fields);
+        return movieInfoService.getMovieById(id, selected)
+                .map(movieInfo -> ResponseEntity.ok().eTag(eTag(movieInfo, selected)).body(movieInfo))
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
     }
 
-    @GetMapping(value = "/movieinfos/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
-    public Flux<MovieInfo> getMovieInfoFlux() {
-        return moviesInfoSink.asFlux();
+    // strong validator from the document version, which moves on every save. A projection is a
+    // different representation of the same version, so its field set is part of the tag
+    static String eTag(MovieInfo movieInfo, MovieInfoFields fields) {
+        var tag = movieInfo.getVersion() != null
+                ? "v" + movieInfo.getVersion()
+                : "h" + Integer.toHexString(movieInfo.hashCode());
+        return "\"" + (fields.isAll() ? tag : tag + ";" + fields.key()) + "\"";
+    }
+
+    // internal callers can ask for the binary Smile stream, everyone else gets NDJSON. Only the SSE
+    // framing has room for the event id and type, so that is the form a subscriber can resume with,
+    // and the only one that carries deletes
+    @GetMapping(value = "/movieinfos/stream", produces = {MediaType.APPLICATION_NDJSON_VALUE, APPLICATION_STREAM_SMILE_VALUE,
+            MediaType.TEXT_EVENT_STREAM_VALUE})
+    public Flux<Object> getMovieInfoFlux(@RequestParam(value = "after", required = false) Long after,
+                                         @RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId,
+                                         ServerHttpRequest request) {
+        var events = movieInfoStreamHub.subscribe(lastEventId != null ? lastEventId : after);
+        if (request.getHeaders().getAccept().stream().anyMatch(MediaType.TEXT_EVENT_STREAM::equalsTypeAndSubtype)) {
+            return events.map(event -> ServerSentEvent.builder(event.movieInfo())
+                    .id(Long.toString(event.id()))
+                    .event(event.type().name().toLowerCase())
+                    .build());
+        }
+        return events.filter(event -> event.type() != MovieInfoEvent.Type.DELETE)
+                .map(MovieInfoEvent::movieInfo);
     }
 
     @GetMapping("/movieinfos/name/{name}")
-    public Mono<ResponseEntity<MovieInfo>> getMovieInfoByName(@PathVariable("name") String name) {
-        return movieInfoService.getMovieByName(name)
+    public Mono<ResponseEntity<MovieInfo>> getMovieInfoByName(@PathVariable("name") String name,
+                                                              @RequestParam(value="fields",required = false) String fields) {
+        return movieInfoService.getMovieByName(name, MovieInfoFields.parse(fields))
                 .map(ResponseEntity.ok()::body)
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
     }
@@ -60,6 +146,7 @@ public class MoviesInfoController {
     @PutMapping("/movieinfos/{id}")
     public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody MovieInfo movieInfo, @PathVariable("id") String id) {
         return movieInfoService.updateMovieinfo(movieInfo, id)
+                .doOnNext(updatedMovieInfo -> publishLocally(MovieInfoEvent.Type.UPDATE, updatedMovieInfo))
                 .map(ResponseEntity.ok()::body)
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
     }
@@ -67,6 +154,14 @@ public class MoviesInfoController {
     @DeleteMapping("/movieinfos/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public Mono<Void> deleteMovieInfo(@PathVariable("id") String id) {
-        return movieInfoService.deleteMovieinfo(id);
+        return movieInfoService.deleteMovieinfo(id)
+                .doOnSuccess(unused -> publishLocally(MovieInfoEvent.Type.DELETE, new MovieInfo(id, null, null, null, null)));
+    }
+
+    // with the change stream as the source these writes come back through it, on every replica
+    private void publishLocally(MovieInfoEvent.Type type, MovieInfo movieInfo) {
+        if (streamSource == StreamSource.LOCAL) {
+            movieInfoStreamHub.publish(type, movieInfo);
+        }
     }
 }
@@ -1,5 +1,6 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
@@ -7,6 +8,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDate;
@@ -16,6 +18,8 @@ import java.util.List;
 @AllArgsConstructor
 @NoArgsConstructor
 @Document
+// a projected read leaves the unselected properties null, they are left out of the body rather than sent as nulls
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class MovieInfo {
     @Id
     private String movieInfoId;
@@ -30,4 +34,11 @@ public class MovieInfo {
     private List<@NotBlank(message = "movieInfo.cast must be present") String> cast;
 
     private LocalDate releaseDate;
+
+    @Version
+    private Long version;
+
+    public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate releaseDate) {
+        this(movieInfoId, name, year, cast, releaseDate, null);
+    }
 }
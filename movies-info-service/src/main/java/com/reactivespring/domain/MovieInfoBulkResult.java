@@ -0,0 +1,14 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The outcome of one record of a bulk ingest, index being its position in the request stream.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record MovieInfoBulkResult(long index, String movieInfoId, Status status, String error) {
+
+    public enum Status {
+        CREATED, INVALID, FAILED
+    }
+}
@@ -0,0 +1,12 @@
+package com.reactivespring.domain;
+
+/**
+ * A MovieInfo change as published on /v1/movieinfos/stream. Ids increase monotonically, which
+ * is what a subscriber resumes from. A DELETE only carries the movieInfoId.
+ */
+public record MovieInfoEvent(long id, Type type, MovieInfo movieInfo) {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+}
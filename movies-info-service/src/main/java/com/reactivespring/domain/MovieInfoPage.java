@@ -0,0 +1,9 @@
+package com.reactivespring.domain;
+
+import java.util.List;
+
+/**
+ * One keyset page of MovieInfos. nextCursor is null on the last page.
+ */
+public record MovieInfoPage(List<MovieInfo> movieInfos, String nextCursor) {
+}
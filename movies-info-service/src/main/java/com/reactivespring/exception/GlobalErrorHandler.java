@@ -24,4 +24,22 @@ public class GlobalErrorHandler {
         log.error("Error is : {} ", error);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(error);
     }
+
+    @ExceptionHandler(InvalidPageRequestException.class)
+    public ResponseEntity<String> handleInvalidPageRequest(InvalidPageRequestException ex) {
+        log.info("Invalid page request : {} ", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidFieldsException.class)
+    public ResponseEntity<String> handleInvalidFields(InvalidFieldsException ex) {
+        log.info("Invalid fields : {} ", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(ReplayExpiredException.class)
+    public ResponseEntity<String> handleReplayExpired(ReplayExpiredException ex) {
+        log.info("Stream resume rejected : {} ", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.GONE).body(ex.getMessage());
+    }
 }
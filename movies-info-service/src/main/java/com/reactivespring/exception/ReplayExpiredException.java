@@ -0,0 +1,8 @@
+package com.reactivespring.exception;
+
+public class ReplayExpiredException extends RuntimeException {
+
+    public ReplayExpiredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.reactivespring.exception;
+
+public class SlowSubscriberException extends RuntimeException {
+
+    public SlowSubscriberException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,52 @@
+package com.reactivespring.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Enforces the remaining budget the caller sends in {@link #HEADER} on MovieInfo reads. Once it
+ * runs out the exchange is cancelled, which also closes the Mongo cursor, and a 504 is returned
+ * if nothing has been written yet. The change feed is left alone, a subscription outlives any
+ * request budget. movies-review-service has its own copy, the services share no code.
+ */
+@Component
+@Slf4j
+public class DeadlineFilter implements WebFilter {
+
+    public static final String HEADER = "X-Request-Timeout-Ms";
+    private static final String STREAM_PATH = "/movieinfos/stream";
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var request = exchange.getRequest();
+        var header = request.getHeaders().getFirst(HEADER);
+        if (header == null || request.getMethod() != HttpMethod.GET || request.getPath().value().endsWith(STREAM_PATH)) {
+            return chain.filter(exchange);
+        }
+        Duration budget;
+        try {
+            budget = Duration.ofMillis(Math.max(0, Long.parseLong(header.trim())));
+        } catch (NumberFormatException ex) {
+            log.info("Ignoring invalid {} header : {}", HEADER, header);
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange)
+                .timeout(budget)
+                .onErrorResume(TimeoutException.class, ex -> {
+                    log.warn("Deadline of {} exceeded for {}", budget, exchange.getRequest().getPath());
+                    if (!exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT)) {
+                        return Mono.error(ex);
+                    }
+                    return exchange.getResponse().setComplete();
+                });
+    }
+}
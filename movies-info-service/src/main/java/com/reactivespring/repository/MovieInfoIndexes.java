@@ -0,0 +1,48 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Every index the movieInfo queries rely on, ensured before the service takes traffic. findByYear
+ * and findByName use the prefix of year_id and name_id. Keyset pages sort on one of the keys and
+ * tie break on _id, a page of one year sorts within the year_ prefixed indexes, and descending
+ * pages walk the same indexes backwards.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MovieInfoIndexes {
+
+    public static final List<Index> INDEXES = List.of(
+            new Index().on("name", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("name_id"),
+            new Index().on("year", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("year_id"),
+            new Index().on("releaseDate", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("releaseDate_id"),
+            new Index().on("year", Sort.Direction.ASC).on("name", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                    .named("year_name_id"),
+            new Index().on("year", Sort.Direction.ASC).on("releaseDate", Sort.Direction.ASC).on("_id", Sort.Direction.ASC)
+                    .named("year_releaseDate_id"));
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    // blocks startup on purpose: until these exist every listing is a collection scan, and an index
+    // redeclared with other keys under the same name should stop the deploy, not slow it down
+    @PostConstruct
+    public void ensureIndexes() {
+        var indexOps = reactiveMongoTemplate.indexOps(MovieInfo.class);
+        var ensured = Flux.fromIterable(INDEXES)
+                .concatMap(indexOps::ensureIndex)
+                .collectList()
+                .block();
+        log.info("Ensured movieInfo indexes {}", ensured);
+    }
+}
@@ -0,0 +1,32 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Gives every movieInfo stored before {@link MovieInfo#getVersion()} existed a version of 0, before the
+ * service takes traffic. Spring Data takes a versioned entity without a version for a new one, so saving
+ * such a document would insert it again under its own id rather than update it.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MovieInfoVersionBackfill {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @PostConstruct
+    public void backfill() {
+        var result = reactiveMongoTemplate.updateMulti(Query.query(Criteria.where("version").exists(false)),
+                        Update.update("version", 0L), MovieInfo.class)
+                .block();
+        log.info("Backfilled the version of {} movieInfos", result != null ? result.getModifiedCount() : 0);
+    }
+}
@@ -0,0 +1,119 @@
+package com.reactivespring.service;
+
+import com.mongodb.client.model.changestream.FullDocument;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonValue;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Drives {@link MovieInfoStreamHub} from the movieInfo collection's change stream when
+ * movieInfoStream.source is CHANGE_STREAM, so every replica publishes every insert, update and
+ * delete. The cluster time of a change becomes its event id, which is the same on every replica.
+ * A dropped change stream is reopened after the resume token of the last change seen.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MovieInfoChangeStreamListener {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final MovieInfoStreamHub movieInfoStreamHub;
+    private final MovieInfoSearchIndex movieInfoSearchIndex;
+
+    @Value("${movieInfoStream.source:LOCAL}")
+    private StreamSource source;
+
+    private volatile BsonValue resumeToken;
+    private Instant startedAt;
+    private Disposable subscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (source != StreamSource.CHANGE_STREAM) {
+            return;
+        }
+        // changes made between startup and the cursor being opened are not missed
+        startedAt = Instant.now();
+        subscription = Flux.defer(this::changeStream)
+                .doOnNext(this::publish)
+                .doOnError(ex -> log.warn("MovieInfo change stream failed : {}", ex.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private Flux<ChangeStreamEvent<MovieInfo>> changeStream() {
+        var options = ChangeStreamOptions.builder()
+                .filter(Aggregation.newAggregation(Aggregation.match(
+                        Criteria.where("operationType").in("insert", "update", "replace", "delete"))))
+                .fullDocumentLookup(FullDocument.UPDATE_LOOKUP);
+        if (resumeToken != null) {
+            options.resumeAfter(resumeToken);
+        } else {
+            options.resumeAt(startedAt);
+        }
+        return reactiveMongoTemplate.changeStream(reactiveMongoTemplate.getCollectionName(MovieInfo.class),
+                options.build(), MovieInfo.class);
+    }
+
+    private void publish(ChangeStreamEvent<MovieInfo> changeStreamEvent) {
+        resumeToken = changeStreamEvent.getResumeToken();
+        var clusterTime = changeStreamEvent.getBsonTimestamp();
+        var id = clusterTime == null ? 0 : clusterTime.getValue();
+        switch (changeStreamEvent.getOperationType()) {
+            case INSERT -> publish(id, MovieInfoEvent.Type.INSERT, changeStreamEvent.getBody());
+            case UPDATE, REPLACE -> publish(id, MovieInfoEvent.Type.UPDATE, changeStreamEvent.getBody());
+            case DELETE -> publish(id, MovieInfoEvent.Type.DELETE, deleted(changeStreamEvent));
+            default -> log.debug("Ignoring {} on the movieInfo change stream", changeStreamEvent.getOperationType());
+        }
+    }
+
+    private void publish(long id, MovieInfoEvent.Type type, MovieInfo movieInfo) {
+        // an update whose document was deleted before the lookup has nothing left to publish
+        if (movieInfo == null) {
+            return;
+        }
+        // writes made on other replicas reach the search index this way, a local write is already in it
+        if (type == MovieInfoEvent.Type.DELETE) {
+            movieInfoSearchIndex.remove(movieInfo.getMovieInfoId());
+        } else {
+            movieInfoSearchIndex.put(movieInfo);
+        }
+        movieInfoStreamHub.publish(id, type, movieInfo);
+    }
+
+    private static MovieInfo deleted(ChangeStreamEvent<MovieInfo> changeStreamEvent) {
+        var raw = changeStreamEvent.getRaw();
+        if (raw == null || raw.getDocumentKey() == null) {
+            return null;
+        }
+        var key = raw.getDocumentKey().get("_id");
+        var movieInfoId = key.isObjectId() ? key.asObjectId().getValue().toHexString() : key.asString().getValue();
+        return new MovieInfo(movieInfoId, null, null, null, null);
+    }
+}
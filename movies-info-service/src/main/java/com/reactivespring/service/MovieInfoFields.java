@@ -0,0 +1,60 @@
+package com.reactivespring.service;
+
+import com.reactivespring.exception.InvalidFieldsException;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The MovieInfo properties a caller asked for with {@code fields=}, pushed down to Mongo as a
+ * projection so that everything else, the cast list above all, is neither read nor serialized.
+ */
+public record MovieInfoFields(Set<String> properties) {
+
+    public static final MovieInfoFields ALL = new MovieInfoFields(Set.of());
+
+    private static final Set<String> SELECTABLE = Set.of("movieInfoId", "name", "year", "cast", "releaseDate");
+
+    // "name,year", "id" is accepted for movieInfoId, a missing or blank list selects every property
+    public static MovieInfoFields parse(String fields) {
+        if (fields == null || fields.isBlank()) {
+            return ALL;
+        }
+        var properties = new LinkedHashSet<String>();
+        Arrays.stream(fields.split(","))
+                .map(String::trim)
+                .filter(field -> !field.isEmpty())
+                .map(field -> "id".equals(field) ? "movieInfoId" : field)
+                .forEach(field -> {
+                    if (!SELECTABLE.contains(field)) {
+                        throw new InvalidFieldsException("Unsupported field : " + field);
+                    }
+                    properties.add(field);
+                });
+        return properties.isEmpty() ? ALL : new MovieInfoFields(Set.copyOf(properties));
+    }
+
+    public boolean isAll() {
+        return properties.isEmpty();
+    }
+
+    // the selected properties in a stable order, "" when every property is selected
+    public String key() {
+        return String.join(",", new TreeSet<>(properties));
+    }
+
+    // _id always comes back, the version too so that the ETag of a projection is still the version
+    Query applyTo(Query query, String... alsoRequired) {
+        if (isAll()) {
+            return query;
+        }
+        var projection = query.fields();
+        properties.forEach(projection::include);
+        Arrays.stream(alsoRequired).forEach(projection::include);
+        projection.include("version");
+        return query;
+    }
+}
@@ -0,0 +1,73 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.ReplayExpiredException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Recent MovieInfo events, bounded by count and by age. Resuming after an id that is no longer
+ * retained fails with {@link ReplayExpiredException} instead of silently skipping the gap.
+ * Ids continue from the epoch the buffer was created with, so that once {@link MovieInfoStreamHub}
+ * gives every process its own, an id from before a restart is never mistaken for a current one.
+ * Not thread safe, {@link MovieInfoStreamHub} guards it.
+ */
+class MovieInfoReplayBuffer {
+
+    private final int maxEvents;
+    private final Duration maxAge;
+    private final Clock clock;
+    private final Deque<RetainedEvent> retained = new ArrayDeque<>();
+    private long lastId;
+
+    MovieInfoReplayBuffer(int maxEvents, Duration maxAge, Clock clock, long epoch) {
+        this.maxEvents = maxEvents;
+        this.maxAge = maxAge;
+        this.clock = clock;
+        this.lastId = epoch;
+    }
+
+    // ids must increase, MovieInfoStreamHub assigns them
+    void append(MovieInfoEvent event) {
+        lastId = event.id();
+        retained.addLast(new RetainedEvent(event, clock.instant()));
+        evict();
+    }
+
+    // afterId null replays everything still retained, an id from an earlier epoch is below the oldest
+    List<MovieInfoEvent> after(Long afterId) {
+        evict();
+        var from = afterId == null ? oldestId() - 1 : afterId;
+        if (from < oldestId() - 1 || from > lastId) {
+            throw new ReplayExpiredException("Event " + from + " is no longer retained, the oldest is " + oldestId());
+        }
+        return retained.stream()
+                .map(RetainedEvent::event)
+                .filter(event -> event.id() > from)
+                .toList();
+    }
+
+    long lastId() {
+        return lastId;
+    }
+
+    private long oldestId() {
+        return retained.isEmpty() ? lastId + 1 : retained.peekFirst().event().id();
+    }
+
+    private void evict() {
+        var cutoff = clock.instant().minus(maxAge);
+        while (retained.size() > maxEvents
+                || !retained.isEmpty() && retained.peekFirst().publishedAt().isBefore(cutoff)) {
+            retained.removeFirst();
+        }
+    }
+
+    private record RetainedEvent(MovieInfoEvent event, Instant publishedAt) {
+    }
+}
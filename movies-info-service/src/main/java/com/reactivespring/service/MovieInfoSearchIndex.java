@@ -0,0 +1,282 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * In-process inverted index over MovieInfo names and cast members, so that prefix and token
+ * search never goes to Mongo. Every indexed MovieInfo gets a dense int doc id and every token
+ * a sorted int[] posting list of them, which a query merges and intersects. A changed or
+ * deleted MovieInfo leaves a tombstone behind, and the postings are rebuilt once tombstones
+ * outnumber the live documents.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MovieInfoSearchIndex {
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final float NAME_WEIGHT = 2f;
+    private static final float CAST_WEIGHT = 1f;
+    private static final float EXACT_BONUS = 0.5f;
+    private static final int MIN_COMPACTION_TOMBSTONES = 1024;
+
+    private final MovieInfoRepository movieInfoRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final TreeMap<String, Postings> nameTerms = new TreeMap<>();
+    private final TreeMap<String, Postings> castTerms = new TreeMap<>();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private MovieInfo[] docs = new MovieInfo[1024];
+    private int docCount;
+
+    // built before the service takes traffic, from then on MovieInfoService keeps it current
+    @PostConstruct
+    public void build() {
+        var indexed = movieInfoRepository.findAll()
+                .doOnNext(this::put)
+                .count()
+                .block();
+        log.info("Indexed {} MovieInfos for search", indexed);
+    }
+
+    public void put(MovieInfo movieInfo) {
+        if (movieInfo.getMovieInfoId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            var existing = docIds.get(movieInfo.getMovieInfoId());
+            if (existing != null) {
+                if (movieInfo.equals(docs[existing])) {
+                    return;
+                }
+                docs[existing] = null;
+            }
+            add(movieInfo);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String movieInfoId) {
+        lock.writeLock().lock();
+        try {
+            var existing = docIds.remove(movieInfoId);
+            if (existing != null) {
+                docs[existing] = null;
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The limit best MovieInfos whose name or cast has a token starting with every token of
+     * the query. A name match outweighs a cast match and a whole token outweighs a prefix.
+     */
+    public List<MovieInfo> search(String query, int limit) {
+        var tokens = tokenize(query);
+        if (tokens.isEmpty() || limit < 1) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            // every step only touches the postings of the token and what is left of the candidates,
+            // never anything sized by the whole index
+            var candidates = match(tokens.get(0));
+            for (var i = 1; i < tokens.size() && candidates.size > 0; i++) {
+                candidates = candidates.intersect(match(tokens.get(i)));
+            }
+            return topK(candidates, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docIds.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // the live docs with a name or cast term starting with token, merged in doc id order from the
+    // postings of all those terms
+    private Matches match(String token) {
+        var cursors = new PriorityQueue<Cursor>(Comparator.comparingInt(Cursor::doc));
+        addCursors(nameTerms, token, NAME_WEIGHT, cursors);
+        addCursors(castTerms, token, CAST_WEIGHT, cursors);
+        var matches = new Matches();
+        while (!cursors.isEmpty()) {
+            var cursor = cursors.poll();
+            if (docs[cursor.doc()] != null) {
+                matches.add(cursor.doc(), cursor.weight);
+            }
+            if (cursor.advance()) {
+                cursors.add(cursor);
+            }
+        }
+        return matches;
+    }
+
+    private void addCursors(TreeMap<String, Postings> terms, String token, float weight, PriorityQueue<Cursor> cursors) {
+        for (var term : terms.subMap(token, true, token + Character.MAX_VALUE, true).entrySet()) {
+            var termWeight = term.getKey().length() == token.length() ? weight + EXACT_BONUS : weight;
+            if (term.getValue().size > 0) {
+                cursors.add(new Cursor(term.getValue(), termWeight));
+            }
+        }
+    }
+
+    private List<MovieInfo> topK(Matches candidates, int limit) {
+        Comparator<Integer> ranking = Comparator.<Integer>comparingDouble(i -> candidates.scores[i])
+                .thenComparing(i -> docs[candidates.docs[i]].getName(), Comparator.nullsFirst(Comparator.reverseOrder()))
+                .thenComparing(i -> docs[candidates.docs[i]].getMovieInfoId(), Comparator.reverseOrder());
+        // min heap of the best limit seen so far, its head is the first to go
+        var best = new PriorityQueue<>(limit + 1, ranking);
+        for (var i = 0; i < candidates.size; i++) {
+            best.add(i);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+        var ranked = new ArrayList<MovieInfo>(best.size());
+        while (!best.isEmpty()) {
+            ranked.add(docs[candidates.docs[best.poll()]]);
+        }
+        return ranked.reversed();
+    }
+
+    // doc ids only ever grow, so appending keeps every posting list sorted
+    private void add(MovieInfo movieInfo) {
+        if (docCount == docs.length) {
+            docs = Arrays.copyOf(docs, docs.length * 2);
+        }
+        var doc = docCount++;
+        docs[doc] = movieInfo;
+        docIds.put(movieInfo.getMovieInfoId(), doc);
+        tokenize(movieInfo.getName()).forEach(token -> nameTerms.computeIfAbsent(token, unused -> new Postings()).add(doc));
+        if (movieInfo.getCast() != null) {
+            movieInfo.getCast().forEach(member ->
+                    tokenize(member).forEach(token -> castTerms.computeIfAbsent(token, unused -> new Postings()).add(doc)));
+        }
+    }
+
+    private void compactIfNeeded() {
+        var tombstones = docCount - docIds.size();
+        if (tombstones < Math.max(MIN_COMPACTION_TOMBSTONES, docIds.size())) {
+            return;
+        }
+        var live = Arrays.stream(docs, 0, docCount).filter(doc -> doc != null).toList();
+        nameTerms.clear();
+        castTerms.clear();
+        docIds.clear();
+        docs = new MovieInfo[Math.max(1024, live.size() * 2)];
+        docCount = 0;
+        live.forEach(this::add);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return List.of();
+        }
+        return Arrays.stream(TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT)))
+                .filter(token -> !token.isEmpty())
+                .distinct()
+                .toList();
+    }
+
+    private static final class Postings {
+
+        private int[] docIds = new int[4];
+        private int size;
+
+        void add(int doc) {
+            // a token repeated within one MovieInfo is posted once
+            if (size > 0 && docIds[size - 1] == doc) {
+                return;
+            }
+            if (size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+            }
+            docIds[size++] = doc;
+        }
+    }
+
+    private static final class Cursor {
+
+        private final Postings postings;
+        private final float weight;
+        private int position;
+
+        Cursor(Postings postings, float weight) {
+            this.postings = postings;
+            this.weight = weight;
+        }
+
+        int doc() {
+            return postings.docIds[position];
+        }
+
+        boolean advance() {
+            return ++position < postings.size;
+        }
+    }
+
+    // docs in ascending order, each with its score so far
+    private static final class Matches {
+
+        private int[] docs = new int[16];
+        private float[] scores = new float[16];
+        private int size;
+
+        // the same doc comes in once per matching term, it counts the best of them
+        void add(int doc, float score) {
+            if (size > 0 && docs[size - 1] == doc) {
+                scores[size - 1] = Math.max(scores[size - 1], score);
+                return;
+            }
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            docs[size] = doc;
+            scores[size++] = score;
+        }
+
+        Matches intersect(Matches other) {
+            var both = new Matches();
+            for (int i = 0, j = 0; i < size && j < other.size; ) {
+                if (docs[i] < other.docs[j]) {
+                    i++;
+                } else if (docs[i] > other.docs[j]) {
+                    j++;
+                } else {
+                    both.add(docs[i], scores[i++] + other.scores[j++]);
+                }
+            }
+            return both;
+        }
+    }
+}
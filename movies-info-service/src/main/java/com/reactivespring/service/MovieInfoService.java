@@ -1,31 +1,179 @@
 package com.reactivespring.service;
 
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoPage;
 import com.reactivespring.repository.MovieInfoRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.util.Optional;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
+@Slf4j
 public class MovieInfoService {
 
     private final MovieInfoRepository movieInfoRepository;
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final Validator validator;
+    private final MovieInfoSearchIndex movieInfoSearchIndex;
 
+    // a client supplied version is never trusted, posting an existing id still replaces that
+    // document, on top of its stored version
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
-        return movieInfoRepository.save(movieInfo);
+        movieInfo.setVersion(null);
+        var stored = movieInfo.getMovieInfoId() != null
+                ? movieInfoRepository.findById(movieInfo.getMovieInfoId())
+                : Mono.<MovieInfo>empty();
+        return stored.doOnNext(existing -> movieInfo.setVersion(existing.getVersion()))
+                .then(Mono.defer(() -> movieInfoRepository.save(movieInfo)))
+                .doOnNext(movieInfoSearchIndex::put);
+    }
+
+    /**
+     * Validates every record like {@code @Valid MovieInfo} and inserts the valid ones in batches of
+     * batchSize, one unordered bulk insert each, with up to concurrency batches in flight. Results come back
+     * in request order, batch by batch, and onInserted sees every batch once it is stored.
+     */
+    public Flux<MovieInfoBulkResult> bulkInsert(Flux<MovieInfo> movieInfos, int batchSize, int concurrency,
+                                               Consumer<List<MovieInfo>> onInserted) {
+        Consumer<List<MovieInfo>> indexed = inserted -> {
+            inserted.forEach(movieInfoSearchIndex::put);
+            onInserted.accept(inserted);
+        };
+        return movieInfos.index((index, movieInfo) -> new BulkRecord(index, movieInfo, violations(movieInfo)))
+                .buffer(batchSize)
+                .flatMapSequential(batch -> Flux.concat(
+                        Flux.fromIterable(batch).filter(record -> record.error() != null).map(BulkRecord::invalid),
+                        insertBatch(batch.stream().filter(record -> record.error() == null).toList(), indexed)),
+                        concurrency);
+    }
+
+    // one unordered bulk insert per batch, a failing document does not stop the others and the
+    // write errors of the single round trip say which ones failed
+    private Flux<MovieInfoBulkResult> insertBatch(List<BulkRecord> records, Consumer<List<MovieInfo>> onInserted) {
+        if (records.isEmpty()) {
+            return Flux.empty();
+        }
+        // bulk operations neither assign ids nor initialize the version the way save and insert do,
+        // and a client supplied version is not kept
+        records.forEach(record -> {
+            if (record.movieInfo().getMovieInfoId() == null) {
+                record.movieInfo().setMovieInfoId(ObjectId.get().toHexString());
+            }
+            record.movieInfo().setVersion(0L);
+        });
+        return reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MovieInfo.class)
+                .insert(records.stream().map(BulkRecord::movieInfo).toList())
+                .execute()
+                .map(result -> Map.<Integer, String>of())
+                .onErrorResume(ex -> {
+                    var writeErrors = writeErrors(ex);
+                    if (writeErrors == null) {
+                        log.error("Bulk insert of {} MovieInfos failed : {}", records.size(), ex.getMessage());
+                        return Mono.error(ex);
+                    }
+                    return Mono.just(writeErrors.stream()
+                            .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage, (first, second) -> first)));
+                })
+                .flatMapMany(failures -> {
+                    var stored = IntStream.range(0, records.size())
+                            .filter(index -> !failures.containsKey(index))
+                            .mapToObj(records::get)
+                            .toList();
+                    onInserted.accept(stored.stream().map(BulkRecord::movieInfo).toList());
+                    return Flux.range(0, records.size())
+                            .map(index -> failures.containsKey(index)
+                                    ? records.get(index).failed(failures.get(index))
+                                    : records.get(index).created());
+                })
+                .onErrorResume(ex -> Flux.fromIterable(records).map(record -> record.failed(ex.getMessage())));
+    }
+
+    private String violations(MovieInfo movieInfo) {
+        var violations = validator.validate(movieInfo);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(", "));
+    }
+
+    private static List<BulkWriteError> writeErrors(Throwable ex) {
+        for (var cause = ex; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException bulkWriteException) {
+                return bulkWriteException.getWriteErrors();
+            }
+            if (cause instanceof BulkOperationException bulkOperationException) {
+                return bulkOperationException.getErrors();
+            }
+        }
+        return null;
+    }
+
+    private record BulkRecord(long index, MovieInfo movieInfo, String error) {
+
+        MovieInfoBulkResult created() {
+            return new MovieInfoBulkResult(index, movieInfo.getMovieInfoId(), MovieInfoBulkResult.Status.CREATED, null);
+        }
+
+        MovieInfoBulkResult invalid() {
+            return new MovieInfoBulkResult(index, movieInfo.getMovieInfoId(), MovieInfoBulkResult.Status.INVALID, error);
+        }
 
+        MovieInfoBulkResult failed(String message) {
+            return new MovieInfoBulkResult(index, movieInfo.getMovieInfoId(), MovieInfoBulkResult.Status.FAILED, message);
+        }
     }
 
-    public Flux<MovieInfo> getAllMovies() {
-        return movieInfoRepository.findAll();
+    // keyset pagination, a page after the cursor costs the same however deep it is
+    // a projected page still reads the sort key, the next cursor is built from it
+    public Mono<MovieInfoPage> getMoviesPage(Integer year, MovieInfoSort sort, String cursor, int limit, MovieInfoFields fields) {
+        var query = new Query();
+        if (year != null) {
+            query.addCriteria(Criteria.where("year").is(year));
+        }
+        if (cursor != null) {
+            var after = PageCursor.decode(cursor, sort);
+            query.addCriteria(sort.after(after.value(), after.id()));
+        }
+        query.with(sort.toSort()).limit(limit);
+        fields.applyTo(query, sort.key().property);
+        return reactiveMongoTemplate.find(query, MovieInfo.class)
+                .collectList()
+                .map(movieInfos -> new MovieInfoPage(movieInfos, movieInfos.size() < limit ? null
+                        : PageCursor.after(sort, movieInfos.get(movieInfos.size() - 1))));
     }
 
     public Mono<MovieInfo> getMovieById(String id) {
-        return movieInfoRepository.findById(id);
+        return getMovieById(id, MovieInfoFields.ALL);
+    }
+
+    public Mono<MovieInfo> getMovieById(String id, MovieInfoFields fields) {
+        if (fields.isAll()) {
+            return movieInfoRepository.findById(id);
+        }
+        return reactiveMongoTemplate.findOne(fields.applyTo(Query.query(Criteria.where("movieInfoId").is(id))), MovieInfo.class);
     }
 
     public Mono<MovieInfo> updateMovieinfo(MovieInfo updatedMovieInfo, String id) {
@@ -37,18 +185,28 @@ public class MovieInfoService {
                     movieInfo.setCast(updatedMovieInfo.getCast());
                     movieInfo.setReleaseDate(updatedMovieInfo.getReleaseDate());
                     return movieInfoRepository.save(movieInfo);
-                });
+                })
+                .doOnNext(movieInfoSearchIndex::put);
     }
 
     public Mono<Void> deleteMovieinfo(String id) {
-        return movieInfoRepository.deleteById(id);
+        return movieInfoRepository.deleteById(id)
+                .doOnSuccess(unused -> movieInfoSearchIndex.remove(id));
     }
 
-    public Flux<MovieInfo> getMovieByYear(Integer year) {
-        return movieInfoRepository.findByYear(year).log();
+    // answered from the in-process index, Mongo is not queried
+    public Flux<MovieInfo> search(String query, int limit) {
+        return Flux.defer(() -> Flux.fromIterable(movieInfoSearchIndex.search(query, limit)));
     }
 
     public Mono<MovieInfo> getMovieByName(String name) {
-        return movieInfoRepository.findByName(name);
+        return getMovieByName(name, MovieInfoFields.ALL);
+    }
+
+    public Mono<MovieInfo> getMovieByName(String name, MovieInfoFields fields) {
+        if (fields.isAll()) {
+            return movieInfoRepository.findByName(name);
+        }
+        return reactiveMongoTemplate.findOne(fields.applyTo(Query.query(Criteria.where("name").is(name))), MovieInfo.class);
     }
 }
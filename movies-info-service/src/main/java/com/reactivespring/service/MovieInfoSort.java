@@ -0,0 +1,89 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.InvalidPageRequestException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * The order of a MovieInfo listing, always tie broken on movieInfoId so that every position
+ * is unique and a page can resume right after its last (value, id) pair.
+ */
+public record MovieInfoSort(Key key, Sort.Direction direction) {
+
+    public static final MovieInfoSort DEFAULT = new MovieInfoSort(Key.ID, Sort.Direction.ASC);
+
+    public enum Key {
+        ID("movieInfoId", String.class, MovieInfo::getMovieInfoId),
+        NAME("name", String.class, MovieInfo::getName),
+        YEAR("year", Integer.class, MovieInfo::getYear),
+        RELEASE_DATE("releaseDate", LocalDate.class, MovieInfo::getReleaseDate);
+
+        final String property;
+        final Class<?> type;
+        final Function<MovieInfo, Object> value;
+
+        Key(String property, Class<?> type, Function<MovieInfo, Object> value) {
+            this.property = property;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    // "name" sorts ascending, "-year" descending, "id" is accepted for movieInfoId
+    public static MovieInfoSort parse(String sort) {
+        if (sort == null || sort.isBlank()) {
+            return DEFAULT;
+        }
+        var descending = sort.startsWith("-");
+        var property = descending ? sort.substring(1) : sort;
+        var key = Arrays.stream(Key.values())
+                .filter(candidate -> candidate.property.equals(property)
+                        || candidate == Key.ID && "id".equals(property))
+                .findFirst()
+                .orElseThrow(() -> new InvalidPageRequestException("Unsupported sort : " + sort));
+        return new MovieInfoSort(key, descending ? Sort.Direction.DESC : Sort.Direction.ASC);
+    }
+
+    @Override
+    public String toString() {
+        return (direction.isDescending() ? "-" : "") + key.property;
+    }
+
+    Sort toSort() {
+        if (key == Key.ID) {
+            return Sort.by(direction, key.property);
+        }
+        return Sort.by(direction, key.property).and(Sort.by(direction, Key.ID.property));
+    }
+
+    Object valueOf(MovieInfo movieInfo) {
+        return key.value.apply(movieInfo);
+    }
+
+    Class<?> valueType() {
+        return key.type;
+    }
+
+    // everything strictly after (value, movieInfoId) in this order. Mongo sorts null before any
+    // value and only compares values of the same type, so nulls get their own branches
+    Criteria after(Object value, String movieInfoId) {
+        var ascending = direction.isAscending();
+        var afterId = ascending ? Criteria.where(Key.ID.property).gt(movieInfoId)
+                : Criteria.where(Key.ID.property).lt(movieInfoId);
+        if (key == Key.ID) {
+            return afterId;
+        }
+        var tie = new Criteria().andOperator(Criteria.where(key.property).is(value), afterId);
+        if (value == null) {
+            return ascending ? new Criteria().orOperator(tie, Criteria.where(key.property).ne(null)) : tie;
+        }
+        var beyond = ascending ? Criteria.where(key.property).gt(value) : Criteria.where(key.property).lt(value);
+        return ascending ? new Criteria().orOperator(beyond, tie)
+                : new Criteria().orOperator(beyond, tie, Criteria.where(key.property).is(null));
+    }
+}
@@ -0,0 +1,261 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.ReplayExpiredException;
+import com.reactivespring.exception.SlowSubscriberException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans MovieInfo events out to /v1/movieinfos/stream subscribers. Publishing is serialized, so
+ * concurrent saves never lose an event, and only enqueues. Each subscriber drains its own
+ * bounded queue on its own worker of the parallel scheduler, at the pace of its own demand, so
+ * the saving thread never pays for delivery and a slow subscriber only ever affects itself, as
+ * decided by the {@link OverflowPolicy}.
+ */
+@Component
+@Slf4j
+public class MovieInfoStreamHub {
+
+    // room for a million events per millisecond of uptime before a restart could reuse an id
+    private static final int EPOCH_SHIFT = 20;
+
+    private final MovieInfoReplayBuffer replayBuffer;
+    private final int subscriberQueueSize;
+    private final OverflowPolicy overflowPolicy;
+    private final MeterRegistry meterRegistry;
+    private final Set<StreamSubscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter dropped;
+    private final Counter conflated;
+    private final Counter disconnected;
+
+    @Autowired
+    public MovieInfoStreamHub(@Value("${movieInfoStream.replay.maxEvents:1000}") int maxEvents,
+                              @Value("${movieInfoStream.replay.maxAge:5m}") Duration maxAge,
+                              @Value("${movieInfoStream.subscriberQueueSize:256}") int subscriberQueueSize,
+                              @Value("${movieInfoStream.overflowPolicy:DROP_OLDEST}") OverflowPolicy overflowPolicy,
+                              MeterRegistry meterRegistry) {
+        this(maxEvents, maxAge, subscriberQueueSize, overflowPolicy, meterRegistry, Clock.systemUTC());
+    }
+
+    MovieInfoStreamHub(int maxEvents, Duration maxAge, int subscriberQueueSize, OverflowPolicy overflowPolicy,
+                       MeterRegistry meterRegistry, Clock clock) {
+        // locally assigned ids start from the startup time, change stream cluster times are larger still
+        this.replayBuffer = new MovieInfoReplayBuffer(maxEvents, maxAge, clock, clock.millis() << EPOCH_SHIFT);
+        this.subscriberQueueSize = subscriberQueueSize;
+        this.overflowPolicy = overflowPolicy;
+        this.meterRegistry = meterRegistry;
+        this.dropped = overflowCounter(meterRegistry, "dropped");
+        this.conflated = overflowCounter(meterRegistry, "conflated");
+        this.disconnected = overflowCounter(meterRegistry, "disconnected");
+    }
+
+    // the gauges hold on to the hub, so they are registered once it is fully constructed
+    @PostConstruct
+    public void registerGauges() {
+        Gauge.builder("movieinfo.stream.subscribers", subscribers, Set::size)
+                .description("Open /v1/movieinfos/stream subscriptions")
+                .register(meterRegistry);
+        Gauge.builder("movieinfo.stream.lag", this, MovieInfoStreamHub::maxLag)
+                .description("Events published but not yet delivered to the furthest behind subscriber")
+                .register(meterRegistry);
+    }
+
+    public MovieInfoEvent publish(MovieInfoEvent.Type type, MovieInfo movieInfo) {
+        return publish(0, type, movieInfo);
+    }
+
+    // an external id, like a change stream cluster time, is kept as long as it moves forward
+    public MovieInfoEvent publish(long id, MovieInfoEvent.Type type, MovieInfo movieInfo) {
+        MovieInfoEvent event;
+        synchronized (this) {
+            event = new MovieInfoEvent(Math.max(id, replayBuffer.lastId() + 1), type, movieInfo);
+            replayBuffer.append(event);
+            subscribers.forEach(subscriber -> subscriber.enqueue(event));
+        }
+        subscribers.forEach(StreamSubscriber::drain);
+        return event;
+    }
+
+    // a whole batch goes in under one lock and each subscriber drains it in one pass
+    public List<MovieInfoEvent> publishAll(MovieInfoEvent.Type type, List<MovieInfo> movieInfos) {
+        if (movieInfos.isEmpty()) {
+            return List.of();
+        }
+        var events = new ArrayList<MovieInfoEvent>(movieInfos.size());
+        synchronized (this) {
+            for (var movieInfo : movieInfos) {
+                var event = new MovieInfoEvent(replayBuffer.lastId() + 1, type, movieInfo);
+                replayBuffer.append(event);
+                events.add(event);
+                subscribers.forEach(subscriber -> subscriber.enqueue(event));
+            }
+        }
+        subscribers.forEach(StreamSubscriber::drain);
+        return events;
+    }
+
+    // the retained events after afterId, then live ones, see MovieInfoReplayBuffer#after
+    public Flux<MovieInfoEvent> subscribe(Long afterId) {
+        return Flux.create(sink -> {
+            StreamSubscriber subscriber;
+            // the backlog is copied and the subscriber registered under the publish lock, so no
+            // event is missed or delivered twice in between
+            synchronized (this) {
+                List<MovieInfoEvent> backlog;
+                try {
+                    backlog = replayBuffer.after(afterId);
+                } catch (ReplayExpiredException ex) {
+                    sink.error(ex);
+                    return;
+                }
+                subscriber = new StreamSubscriber(sink, backlog,
+                        backlog.isEmpty() ? replayBuffer.lastId() : backlog.get(0).id() - 1, Schedulers.parallel().createWorker());
+                subscribers.add(subscriber);
+            }
+            sink.onDispose(() -> {
+                subscribers.remove(subscriber);
+                subscriber.worker.dispose();
+            });
+            sink.onRequest(n -> subscriber.drain());
+        });
+    }
+
+    // counted in events, ids are cluster times under the change stream and say nothing about distance
+    private long maxLag() {
+        return subscribers.stream()
+                .mapToLong(StreamSubscriber::pending)
+                .max()
+                .orElse(0);
+    }
+
+    private static Counter overflowCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("movieinfo.stream.overflow")
+                .description("Events a full subscriber queue could not take")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private final class StreamSubscriber {
+
+        private final FluxSink<MovieInfoEvent> sink;
+        private final Deque<MovieInfoEvent> backlog;
+        private final Deque<MovieInfoEvent> queue = new ArrayDeque<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final Scheduler.Worker worker;
+        private volatile long lastDeliveredId;
+        private boolean closed;
+
+        StreamSubscriber(FluxSink<MovieInfoEvent> sink, List<MovieInfoEvent> backlog, long lastDeliveredId,
+                         Scheduler.Worker worker) {
+            this.sink = sink;
+            this.backlog = new ArrayDeque<>(backlog);
+            this.lastDeliveredId = lastDeliveredId;
+            this.worker = worker;
+        }
+
+        void enqueue(MovieInfoEvent event) {
+            int behind;
+            synchronized (queue) {
+                if (closed) {
+                    return;
+                }
+                if (queue.size() < subscriberQueueSize || makeRoom(event)) {
+                    queue.addLast(event);
+                    return;
+                }
+                closed = true;
+                behind = backlog.size() + queue.size() + 1;
+            }
+            disconnected.increment();
+            log.info("Disconnecting a stream subscriber {} events behind", behind);
+            var resumeAfter = lastDeliveredId;
+            worker.schedule(() -> sink.error(new SlowSubscriberException(
+                    "Subscriber fell behind, resume after event " + resumeAfter)));
+        }
+
+        private boolean makeRoom(MovieInfoEvent event) {
+            switch (overflowPolicy) {
+                case CONFLATE -> {
+                    var movieInfoId = event.movieInfo().getMovieInfoId();
+                    var iterator = queue.iterator();
+                    while (iterator.hasNext()) {
+                        if (Objects.equals(iterator.next().movieInfo().getMovieInfoId(), movieInfoId)) {
+                            iterator.remove();
+                            conflated.increment();
+                            return true;
+                        }
+                    }
+                    queue.removeFirst();
+                    dropped.increment();
+                    return true;
+                }
+                case DROP_OLDEST -> {
+                    queue.removeFirst();
+                    dropped.increment();
+                    return true;
+                }
+                default -> {
+                    return false;
+                }
+            }
+        }
+
+        // the drain loop runs on the subscriber's worker, never beyond its outstanding demand
+        void drain() {
+            if (wip.getAndIncrement() == 0) {
+                worker.schedule(this::drainLoop);
+            }
+        }
+
+        private void drainLoop() {
+            var missed = 1;
+            do {
+                while (sink.requestedFromDownstream() > 0 && !sink.isCancelled()) {
+                    var next = poll();
+                    if (next == null) {
+                        break;
+                    }
+                    lastDeliveredId = next.id();
+                    sink.next(next);
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        // events taken in but not yet delivered
+        long pending() {
+            synchronized (queue) {
+                return backlog.size() + queue.size();
+            }
+        }
+
+        private MovieInfoEvent poll() {
+            synchronized (queue) {
+                return backlog.isEmpty() ? queue.pollFirst() : backlog.pollFirst();
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.reactivespring.service;
+
+/**
+ * What happens to a stream subscriber whose queue is full when the next event arrives.
+ */
+public enum OverflowPolicy {
+    // the oldest queued event is discarded
+    DROP_OLDEST,
+    // an older queued event for the same movieInfoId is discarded, otherwise the oldest one
+    CONFLATE,
+    // the subscriber is disconnected and can resume from its last event id
+    DISCONNECT
+}
@@ -0,0 +1,43 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.InvalidPageRequestException;
+
+import java.util.Base64;
+
+/**
+ * Opaque continuation token of a keyset page, the sort it was issued for and the
+ * (value, movieInfoId) of the last MovieInfo on the page.
+ */
+record PageCursor(String sort, Object value, String id) {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    static String after(MovieInfoSort sort, MovieInfo last) {
+        try {
+            var json = OBJECT_MAPPER.writeValueAsBytes(new PageCursor(sort.toString(), sort.valueOf(last), last.getMovieInfoId()));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (Exception ex) {
+            throw new IllegalStateException("Unable to encode the page cursor", ex);
+        }
+    }
+
+    static PageCursor decode(String cursor, MovieInfoSort sort) {
+        PageCursor decoded;
+        try {
+            decoded = OBJECT_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), PageCursor.class);
+        } catch (Exception ex) {
+            throw new InvalidPageRequestException("Invalid cursor : " + cursor);
+        }
+        if (!sort.toString().equals(decoded.sort()) || decoded.id() == null) {
+            throw new InvalidPageRequestException("The cursor was issued for sort " + decoded.sort() + ", not " + sort);
+        }
+        var value = decoded.value() == null ? null : OBJECT_MAPPER.convertValue(decoded.value(), sort.valueType());
+        return new PageCursor(decoded.sort(), value, decoded.id());
+    }
+}
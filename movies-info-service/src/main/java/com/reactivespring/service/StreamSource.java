@@ -0,0 +1,11 @@
+package com.reactivespring.service;
+
+/**
+ * Where the /v1/movieinfos/stream events come from.
+ */
+public enum StreamSource {
+    // writes made through this instance only
+    LOCAL,
+    // the movieInfo collection's change stream, every replica sees every write, needs a replica set
+    CHANGE_STREAM
+}
@@ -0,0 +1,75 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// the change stream needs the local Mongo running as a single node replica set (mongod --replSet rs0),
+// so this only runs with -PreplicaSet
+@Tag("replicaSet")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+@TestPropertySource(properties = "movieInfoStream.source=CHANGE_STREAM")
+class MovieInfoChangeStreamIntegrationTest {
+
+    public static final String MOVIEINFOS_URI = "/v1/movieinfos";
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void writesMadeOutsideTheControllerArePublished() {
+        var movieInfo = movieInfoRepository.save(new MovieInfo("cs1", "Batman Begins", 2005,
+                List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"))).block();
+        Objects.requireNonNull(movieInfo).setName("Batman Begins Remastered");
+        movieInfoRepository.save(movieInfo).block();
+        movieInfoRepository.deleteById("cs1").block();
+
+        var events = webTestClient.get()
+                .uri(MOVIEINFOS_URI + "/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<MovieInfo>>() {})
+                .getResponseBody()
+                .filter(event -> "cs1".equals(Objects.requireNonNull(event.data()).getMovieInfoId()));
+
+        StepVerifier.create(events)
+                .assertNext(event -> assertEquals("insert", event.event()))
+                .assertNext(event -> {
+                    assertEquals("update", event.event());
+                    assertEquals("Batman Begins Remastered", Objects.requireNonNull(event.data()).getName());
+                })
+                .assertNext(event -> assertEquals("delete", event.event()))
+                .thenCancel()
+                .verify(Duration.ofSeconds(10));
+    }
+}
@@ -1,17 +1,23 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
 import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.repository.MovieInfoVersionBackfill;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.web.util.UriUtils;
+import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
 
 import java.nio.charset.StandardCharsets;
@@ -33,6 +39,12 @@ class MoviesInfoControllerIntegrationTest {
     @Autowired
     WebTestClient webTestClient;
 
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    MovieInfoVersionBackfill movieInfoVersionBackfill;
+
     @BeforeEach
     void setup() {
         var movieInfos = List.of(new MovieInfo(null,"Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
@@ -64,6 +76,57 @@ class MoviesInfoControllerIntegrationTest {
                 });
     }
 
+    @Test
+    void bulkAddMovieInfos() {
+        var records = Flux.range(0, 5)
+                .map(i -> i == 2 ? new MovieInfo(null, "", 2008, List.of(), null)
+                        : new MovieInfo(null, "Batman " + i, 2005, List.of("Christian Bale"), null));
+
+        webTestClient.post().uri(MOVIEINFOS_URI + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(records, MovieInfo.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MovieInfoBulkResult.class)
+                .value(results -> {
+                    assertEquals(4, results.stream().filter(result -> result.status() == MovieInfoBulkResult.Status.CREATED).count());
+                    assertEquals("movieInfo.name must be present", results.stream()
+                            .filter(result -> result.index() == 2).findFirst().orElseThrow().error());
+                });
+
+        StepVerifier.create(movieInfoRepository.count())
+                .expectNext(7L)
+                .verifyComplete();
+    }
+
+    @Test
+    void searchMovieInfos() {
+        var movieInfo = new MovieInfo(null, "The Dark Knight", 2008, List.of("Christian Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"));
+        var saved = webTestClient.post().uri(MOVIEINFOS_URI)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(MovieInfo.class)
+                .returnResult().getResponseBody();
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI + "/search?q={q}", "heath dar")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertEquals(saved.getMovieInfoId(), movieInfos.get(0).getMovieInfoId()));
+
+        webTestClient.delete().uri(MOVIEINFOS_URI + "/{id}", saved.getMovieInfoId())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI + "/search?q={q}", "heath")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(0);
+    }
+
     @Test
     void getAllMovies() {
         webTestClient.get()
@@ -73,6 +136,40 @@ class MoviesInfoControllerIntegrationTest {
                 .hasSize(3);
     }
 
+    @Test
+    void getAllMovies_keysetPages() {
+        var firstPage = webTestClient.get()
+                .uri(MOVIEINFOS_URI + "?limit=2&sort=-year")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2)
+                .returnResult();
+        assertEquals(2012, firstPage.getResponseBody().get(0).getYear());
+        var cursor = firstPage.getResponseHeaders().getFirst(MoviesInfoController.NEXT_CURSOR);
+        assertNotNull(cursor);
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI + "?limit=2&sort=-year&after={cursor}", cursor)
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectHeader().doesNotExist(MoviesInfoController.NEXT_CURSOR)
+                .expectBodyList(MovieInfo.class)
+                .value(movieInfos -> assertEquals("Batman Begins", movieInfos.get(0).getName()))
+                .hasSize(1);
+    }
+
+    @Test
+    void getAllMovies_fields() {
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI + "?sort=name&fields=name")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3)
+                .jsonPath("$[0].name").isEqualTo("Batman Begins")
+                .jsonPath("$[0].movieInfoId").exists()
+                .jsonPath("$[0].cast").doesNotExist()
+                .jsonPath("$[0].releaseDate").doesNotExist();
+    }
+
     @Test
     void getAllMovies_stream() {
 
@@ -188,6 +285,61 @@ class MoviesInfoControllerIntegrationTest {
                 })*/;
     }
 
+    // written before MovieInfo was versioned, the backfill gives it the version the update then moves on
+    @Test
+    void updateMovieInfoStoredWithoutVersion() {
+        reactiveMongoTemplate.insert(new Document("_id", "legacy").append("name", "Batman Begins").append("year", 2005),
+                reactiveMongoTemplate.getCollectionName(MovieInfo.class)).block();
+        movieInfoVersionBackfill.backfill();
+        final var movieInfo = new MovieInfo("legacy", "Batman Begins Remastered", 2005, List.of("Christian Bale"), null);
+
+        webTestClient.put().uri(MOVIEINFOS_URI+"/{id}","legacy")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfo.class)
+                .consumeWith(mi -> {
+                    var m = mi.getResponseBody();
+                    assert m != null;
+                    assertEquals("Batman Begins Remastered", m.getName());
+                    assertEquals(1L, m.getVersion());
+                });
+    }
+
+    @Test
+    void addMovieInfoIgnoresTheClientVersion() {
+        final var movieInfo = new MovieInfo(null, "The Dark Knight", 2008, List.of("Christian Bale"), null, 42L);
+
+        webTestClient.post().uri(MOVIEINFOS_URI)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(MovieInfo.class)
+                .consumeWith(mi -> assertEquals(0L, mi.getResponseBody().getVersion()));
+    }
+
+    @Test
+    void addMovieInfoWithAnExistingIdReplacesIt() {
+        final var movieInfo = new MovieInfo("abc", "Dark Knight Rises Remastered", 2012, List.of("Christian Bale"), null, 42L);
+
+        webTestClient.post().uri(MOVIEINFOS_URI)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(MovieInfo.class)
+                .consumeWith(mi -> assertEquals(1L, mi.getResponseBody().getVersion()));
+
+        StepVerifier.create(movieInfoRepository.findById("abc"))
+                .assertNext(stored -> assertEquals("Dark Knight Rises Remastered", stored.getName()))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.count())
+                .expectNext(3L)
+                .verifyComplete();
+    }
+
     @Test
     void deleteMovieInfo() {
 
@@ -0,0 +1,130 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.service.MovieInfoFields;
+import com.reactivespring.service.MovieInfoService;
+import com.reactivespring.service.MovieInfoSort;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// the queries the service and the repository actually send are profiled, a COLLSCAN among them fails the build
+@DataMongoTest
+@ActiveProfiles("test")
+@Import(MovieInfoIndexes.class)
+class MovieInfoIndexesTest {
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    MovieInfoService movieInfoService;
+
+    @BeforeEach
+    void setup() {
+        // the unnamed, undated one sends the keyset pages through their null branches
+        var movieInfos = List.of(new MovieInfo(null,"Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "The Dark Knight", 2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("def", null, 2008, List.of(), null));
+
+        movieInfoRepository.saveAll(movieInfos).blockLast();
+        movieInfoService = new MovieInfoService(movieInfoRepository, reactiveMongoTemplate, null, null);
+        reactiveMongoTemplate.executeCommand(new Document("profile", 0))
+                .then(reactiveMongoTemplate.dropCollection("system.profile"))
+                .then(reactiveMongoTemplate.executeCommand(new Document("profile", 2)))
+                .block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveMongoTemplate.executeCommand(new Document("profile", 0)).block();
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void derivedQueries() {
+        movieInfoRepository.findByYear(2005).blockLast();
+        movieInfoRepository.findByName("Batman Begins").block();
+        movieInfoRepository.findById("abc").block();
+
+        assertNoCollectionScan(profiledQueries());
+    }
+
+    @Test
+    void lookupsByIdAndName() {
+        var fields = MovieInfoFields.parse("name,year");
+        for (var selected : List.of(MovieInfoFields.ALL, fields)) {
+            movieInfoService.getMovieById("abc", selected).block();
+            movieInfoService.getMovieByName("Batman Begins", selected).block();
+        }
+
+        assertNoCollectionScan(profiledQueries());
+    }
+
+    // one MovieInfo per page, so every position, the null ones included, is resumed from
+    @Test
+    void everyPageOfEveryListing() {
+        var fields = MovieInfoFields.parse("name");
+        for (var key : MovieInfoSort.Key.values()) {
+            for (var direction : Sort.Direction.values()) {
+                var sort = new MovieInfoSort(key, direction);
+                for (var year : Arrays.asList(null, 2008)) {
+                    for (var selected : List.of(MovieInfoFields.ALL, fields)) {
+                        walk(year, sort, selected);
+                    }
+                }
+            }
+        }
+
+        var queries = profiledQueries();
+        assertNoCollectionScan(queries);
+        // where the keyset position needs no $or, the order has to come straight out of an index
+        queries.stream()
+                .filter(query -> !query.get("command", Document.class).get("filter", new Document()).containsKey("$or"))
+                .forEach(query -> assertFalse(query.getBoolean("hasSortStage", false),
+                        "In memory sort for " + query.get("command", Document.class).toJson()));
+    }
+
+    private void walk(Integer year, MovieInfoSort sort, MovieInfoFields fields) {
+        String cursor = null;
+        do {
+            cursor = movieInfoService.getMoviesPage(year, sort, cursor, 1, fields).block().nextCursor();
+        } while (cursor != null);
+    }
+
+    private List<Document> profiledQueries() {
+        var namespace = reactiveMongoTemplate.getMongoDatabase()
+                .map(database -> database.getName() + "." + reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .block();
+        var queries = reactiveMongoTemplate.find(Query.query(Criteria.where("ns").is(namespace).and("planSummary").exists(true)),
+                        Document.class, "system.profile")
+                .collectList()
+                .block();
+        assertTrue(queries != null && !queries.isEmpty(), "Nothing profiled on " + namespace);
+        return queries;
+    }
+
+    private static void assertNoCollectionScan(List<Document> queries) {
+        queries.forEach(query -> assertFalse(query.getString("planSummary").contains("COLLSCAN"),
+                "Collection scan for " + query.get("command", Document.class).toJson()));
+    }
+}
@@ -1,24 +1,42 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.service.MovieInfoFields;
 import com.reactivespring.service.MovieInfoService;
+import com.reactivespring.service.MovieInfoSort;
+import com.reactivespring.service.MovieInfoStreamHub;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 
 @WebFluxTest(controllers = MoviesInfoController.class)
+@Import({MovieInfoStreamHub.class, SimpleMeterRegistry.class})
 @AutoConfigureWebTestClient
 class MoviesInfoControllerUnitTest {
 
@@ -37,20 +55,106 @@ class MoviesInfoControllerUnitTest {
                 new MovieInfo(null, "The Dark Knight", 2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18")),
                 new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
 
-        when(movieInfoService.getAllMovies()).thenReturn(Flux.fromIterable(movieInfos));
+        when(movieInfoService.getMoviesPage(isNull(), eq(MovieInfoSort.DEFAULT), isNull(), eq(100), eq(MovieInfoFields.ALL)))
+                .thenReturn(Mono.just(new MovieInfoPage(movieInfos, null)));
 
         webTestClient.get()
                 .uri(MOVIEINFOS_URI)
                 .exchange().expectStatus().is2xxSuccessful()
+                .expectHeader().doesNotExist(MoviesInfoController.NEXT_CURSOR)
                 .expectBodyList(MovieInfo.class)
                 .hasSize(3);
     }
 
+    @Test
+    void getAllMovies_smile() {
+
+        var movieInfos = List.of(new MovieInfo(null,"Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        when(movieInfoService.getMoviesPage(isNull(), eq(MovieInfoSort.DEFAULT), isNull(), eq(100), eq(MovieInfoFields.ALL)))
+                .thenReturn(Mono.just(new MovieInfoPage(movieInfos, null)));
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI)
+                .accept(MediaType.parseMediaType(MoviesInfoController.APPLICATION_STREAM_SMILE_VALUE), MediaType.APPLICATION_JSON)
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectHeader().contentType(MoviesInfoController.APPLICATION_STREAM_SMILE_VALUE)
+                .expectBodyList(MovieInfo.class)
+                .hasSize(2);
+    }
+
+    @Test
+    void getMoviesPage() {
+
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+
+        when(movieInfoService.getMoviesPage(isNull(), eq(MovieInfoSort.parse("-year")), eq("abb"), eq(1), eq(MovieInfoFields.ALL)))
+                .thenReturn(Mono.just(new MovieInfoPage(movieInfos, "abc")));
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI + "?limit=1&after=abb&sort=-year")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectHeader().valueEquals(MoviesInfoController.NEXT_CURSOR, "abc")
+                .expectBodyList(MovieInfo.class)
+                .hasSize(1);
+    }
+
+    @Test
+    void getMoviesPage_unsupportedSort() {
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI + "?sort=cast")
+                .exchange().expectStatus().isBadRequest();
+    }
+
+    @Test
+    void getAllMovies_fields() {
+
+        var movieInfos = List.of(new MovieInfo("abc", "Dark Knight Rises", 2012, null, LocalDate.parse("2012-07-20")));
+
+        when(movieInfoService.getMoviesPage(isNull(), eq(MovieInfoSort.DEFAULT), isNull(), eq(100),
+                eq(new MovieInfoFields(Set.of("name", "year", "releaseDate")))))
+                .thenReturn(Mono.just(new MovieInfoPage(movieInfos, null)));
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI + "?fields=name,year,releaseDate")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$[0].cast").doesNotExist()
+                .jsonPath("$[0].version").doesNotExist();
+    }
+
+    @Test
+    void getAllMovies_unsupportedField() {
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI + "?fields=name,budget")
+                .exchange().expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Unsupported field : budget");
+    }
+
+    @Test
+    void searchMovieInfos() {
+
+        var movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        when(movieInfoService.search("dark kni", 100)).thenReturn(Flux.just(movieInfo));
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI + "/search?q={q}&limit=500", "dark kni")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .contains(movieInfo);
+    }
+
     @Test
     void getMovieInfoById() {
 
         var movieInfos = new MovieInfo(null,"Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
-        when(movieInfoService.getMovieById(anyString())).thenReturn(Mono.just(movieInfos));
+        when(movieInfoService.getMovieById(anyString(), any())).thenReturn(Mono.just(movieInfos));
 
         webTestClient.get()
                 .uri(MOVIEINFOS_URI+"/id/abc")
@@ -60,6 +164,75 @@ class MoviesInfoControllerUnitTest {
 
     }
 
+    @Test
+    void getMovieInfoById_notModified() {
+
+        var movieInfo = new MovieInfo("abc", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"), 3L);
+        when(movieInfoService.getMovieById(anyString(), any())).thenReturn(Mono.just(movieInfo));
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI+"/id/abc")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"v3\"");
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI+"/id/abc")
+                .ifNoneMatch("\"v3\"")
+                .exchange().expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+    }
+
+    @Test
+    void getMovieInfoById_projectionHasItsOwnETag() {
+
+        var movieInfo = new MovieInfo("abc", "Batman Begins", 2005, null, null, 3L);
+        when(movieInfoService.getMovieById(anyString(), any())).thenReturn(Mono.just(movieInfo));
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI+"/id/abc?fields=year,name")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"v3;name,year\"");
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI+"/id/abc?fields=name,year")
+                .ifNoneMatch("\"v3\"")
+                .exchange().expectStatus().is2xxSuccessful()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"v3;name,year\"");
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI+"/id/abc?fields=name,year")
+                .ifNoneMatch("\"v3;name,year\"")
+                .exchange().expectStatus().isNotModified();
+
+    }
+
+    @Test
+    void getMovieInfoById_deadlineExceeded() {
+
+        var movieInfos = new MovieInfo(null,"Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        when(movieInfoService.getMovieById(anyString(), any())).thenReturn(Mono.just(movieInfos).delayElement(Duration.ofSeconds(2)));
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI+"/id/abc")
+                .header("X-Request-Timeout-Ms", "100")
+                .exchange().expectStatus().isEqualTo(504);
+
+    }
+
+    @Test
+    void addMovieInfo_deadlineNotEnforced() {
+        final var movieInfo = new MovieInfo("mockid", "The Dark Knight", 2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18"));
+
+        when(movieInfoService.addMovieInfo(isA(MovieInfo.class))).thenReturn(Mono.just(movieInfo).delayElement(Duration.ofMillis(300)));
+        webTestClient.post().uri(MOVIEINFOS_URI)
+                .header("X-Request-Timeout-Ms", "100")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+    }
+
     @Test
     void addMovieInfo() {
         final var movieInfo = new MovieInfo("mockid", "The Dark Knight", 2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18"));
@@ -78,6 +251,44 @@ class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void getMovieInfoStream_eventIds() {
+        final var movieInfo = new MovieInfo("mockid", "The Dark Knight", 2008, List.of("Christian Bale", "HeathLedger"), LocalDate.parse("2008-07-18"));
+        when(movieInfoService.addMovieInfo(isA(MovieInfo.class))).thenReturn(Mono.just(movieInfo));
+
+        webTestClient.post().uri(MOVIEINFOS_URI)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus().isCreated();
+
+        var events = webTestClient.get()
+                .uri(MOVIEINFOS_URI+"/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<MovieInfo>>() {})
+                .getResponseBody();
+
+        StepVerifier.create(events.filter(event -> "insert".equals(event.event())))
+                .assertNext(event -> {
+                    assertNotNull(event.id());
+                    assertEquals("The Dark Knight", Objects.requireNonNull(event.data()).getName());
+                })
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void getMovieInfoStream_resumeExpired() {
+
+        webTestClient.get()
+                .uri(MOVIEINFOS_URI+"/stream")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .header(MoviesInfoController.LAST_EVENT_ID, "999999")
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.GONE);
+    }
+
     @Test
     void addMovieInfoValidation() {
         final var movieInfo = new MovieInfo("mockid", "", -2008, List.of("Christian Bale", ""), LocalDate.parse("2008-07-18"));
@@ -116,6 +327,24 @@ class MoviesInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void bulkAddMovieInfos() {
+
+        when(movieInfoService.bulkInsert(any(), eq(500), eq(4), any()))
+                .thenReturn(Flux.just(new MovieInfoBulkResult(0, "abc", MovieInfoBulkResult.Status.CREATED, null),
+                        new MovieInfoBulkResult(1, null, MovieInfoBulkResult.Status.INVALID, "movieInfo.name must be present")));
+
+        webTestClient.post().uri(MOVIEINFOS_URI + "/bulk")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"Batman Begins\",\"year\":2005}\n{\"year\":2005}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(MovieInfoBulkResult.class)
+                .value(results -> assertEquals(MovieInfoBulkResult.Status.INVALID, results.get(1).status()))
+                .hasSize(2);
+    }
+
     @Test
     void deleteMovieInfo() {
 
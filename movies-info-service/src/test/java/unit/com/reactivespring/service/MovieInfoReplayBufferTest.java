@@ -0,0 +1,71 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.ReplayExpiredException;
+import com.reactivespring.util.MutableClock;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MovieInfoReplayBufferTest {
+
+    MutableClock clock = new MutableClock();
+    MovieInfoReplayBuffer replayBuffer = new MovieInfoReplayBuffer(3, Duration.ofMinutes(5), clock, 0);
+
+    long lastId;
+
+    void append(String name) {
+        replayBuffer.append(new MovieInfoEvent(++lastId, MovieInfoEvent.Type.INSERT,
+                new MovieInfo(null, name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"))));
+    }
+
+    static List<Long> ids(List<MovieInfoEvent> events) {
+        return events.stream().map(MovieInfoEvent::id).toList();
+    }
+
+    @Test
+    void resumesAfterTheGivenId() {
+        append("Batman Begins");
+        append("The Dark Knight");
+
+        assertEquals(List.of(2L), ids(replayBuffer.after(1L)));
+        assertEquals(List.of(1L, 2L), ids(replayBuffer.after(null)));
+    }
+
+    @Test
+    void evictedIdIsReportedAsExpired() {
+        for (var i = 0; i < 5; i++) {
+            append("Batman Begins " + i);
+        }
+
+        assertThrows(ReplayExpiredException.class, () -> replayBuffer.after(1L));
+        assertThrows(ReplayExpiredException.class, () -> replayBuffer.after(6L));
+        assertEquals(List.of(3L, 4L, 5L), ids(replayBuffer.after(null)));
+    }
+
+    @Test
+    void eventsOlderThanMaxAgeAreEvicted() {
+        append("Batman Begins");
+        clock.advance(Duration.ofMinutes(10));
+
+        assertThrows(ReplayExpiredException.class, () -> replayBuffer.after(0L));
+        assertTrue(replayBuffer.after(1L).isEmpty());
+    }
+
+    @Test
+    void idFromAnEarlierEpochIsReportedAsExpired() {
+        var restarted = new MovieInfoReplayBuffer(3, Duration.ofMinutes(5), clock, 1000);
+        restarted.append(new MovieInfoEvent(1001, MovieInfoEvent.Type.INSERT,
+                new MovieInfo(null, "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"))));
+
+        assertThrows(ReplayExpiredException.class, () -> restarted.after(2L));
+        assertTrue(restarted.after(1001L).isEmpty());
+    }
+}
@@ -0,0 +1,87 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieInfoSearchIndexTest {
+
+    MovieInfoRepository movieInfoRepository = mock(MovieInfoRepository.class);
+
+    MovieInfoSearchIndex index = new MovieInfoSearchIndex(movieInfoRepository);
+
+    static MovieInfo movieInfo(String movieInfoId, String name, String... cast) {
+        return new MovieInfo(movieInfoId, name, 2005, List.of(cast), null);
+    }
+
+    static List<String> ids(List<MovieInfo> movieInfos) {
+        return movieInfos.stream().map(MovieInfo::getMovieInfoId).toList();
+    }
+
+    @Test
+    void buildsFromTheRepository() {
+        when(movieInfoRepository.findAll()).thenReturn(Flux.just(
+                movieInfo("a", "Batman Begins", "Christian Bale"),
+                movieInfo("b", "The Dark Knight", "Christian Bale", "Heath Ledger")));
+
+        index.build();
+
+        assertEquals(2, index.size());
+        assertEquals(List.of("b"), ids(index.search("Heath", 10)));
+    }
+
+    @Test
+    void everyQueryTokenMatchesAsAPrefix() {
+        index.put(movieInfo("a", "Batman Begins", "Christian Bale"));
+        index.put(movieInfo("b", "The Dark Knight", "Christian Bale", "Heath Ledger"));
+        index.put(movieInfo("c", "Dark Knight Rises", "Christian Bale", "Tom Hardy"));
+
+        assertEquals(List.of("c", "b"), ids(index.search("dark kni", 10)));
+        assertEquals(List.of("b"), ids(index.search("knight, heath", 10)));
+        assertEquals(List.of(), ids(index.search("batman hardy", 10)));
+        assertEquals(List.of(), ids(index.search(" ,", 10)));
+    }
+
+    @Test
+    void nameMatchesRankAboveCastMatchesAndWholeTokensAbovePrefixes() {
+        index.put(movieInfo("a", "Hardy Boys", "Someone Else"));
+        index.put(movieInfo("b", "Dark Knight Rises", "Tom Hardy"));
+        index.put(movieInfo("c", "Hardly Working", "Jerry Lewis"));
+
+        // equal scores go by name
+        assertEquals(List.of("c", "a", "b"), ids(index.search("hard", 10)));
+        assertEquals(List.of("c", "a"), ids(index.search("hard", 2)));
+        assertEquals(List.of("a", "b"), ids(index.search("hardy", 10)));
+    }
+
+    @Test
+    void updatesAndDeletesAreSearchable() {
+        index.put(movieInfo("a", "Batman Begins", "Christian Bale"));
+        index.put(movieInfo("a", "Batman Returns", "Michael Keaton"));
+
+        assertEquals(List.of(), ids(index.search("bale", 10)));
+        assertEquals(List.of("a"), ids(index.search("keaton", 10)));
+
+        index.remove("a");
+
+        assertEquals(List.of(), ids(index.search("batman", 10)));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void tombstonesAreCompactedAway() {
+        IntStream.range(0, 3000).forEach(i -> index.put(movieInfo("id" + (i % 10), "Movie " + i, "Cast " + i)));
+
+        assertEquals(10, index.size());
+        assertEquals(List.of("id9"), ids(index.search("movie 2999", 10)));
+        assertEquals(10, index.search("movie", 100).size());
+    }
+}
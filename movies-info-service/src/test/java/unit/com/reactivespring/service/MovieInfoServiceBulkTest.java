@@ -0,0 +1,92 @@
+package com.reactivespring.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoBulkResult;
+import com.reactivespring.repository.MovieInfoRepository;
+import jakarta.validation.Validation;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.ReactiveBulkOperations;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class MovieInfoServiceBulkTest {
+
+    ReactiveMongoTemplate reactiveMongoTemplate = mock(ReactiveMongoTemplate.class);
+
+    MovieInfoSearchIndex movieInfoSearchIndex = new MovieInfoSearchIndex(mock(MovieInfoRepository.class));
+
+    MovieInfoService movieInfoService = new MovieInfoService(mock(MovieInfoRepository.class), reactiveMongoTemplate,
+            Validation.buildDefaultValidatorFactory().getValidator(), movieInfoSearchIndex);
+
+    ReactiveBulkOperations bulkOperations = mock(ReactiveBulkOperations.class);
+
+    static MovieInfo movieInfo(String name) {
+        return new MovieInfo(null, name, 2005, List.of("Christian Bale"), null);
+    }
+
+    @BeforeEach
+    void setUp() {
+        when(reactiveMongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MovieInfo.class)).thenReturn(bulkOperations);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+    }
+
+    @Test
+    void invalidRecordsAreReportedAndValidOnesInsertedInBatches() {
+        when(bulkOperations.execute()).thenReturn(Mono.just(BulkWriteResult.acknowledged(2, 0, 0, 0, List.of(), List.of())));
+        var inserted = new ArrayList<List<MovieInfo>>();
+        // a version sent by the client is not kept
+        var versioned = movieInfo("c");
+        versioned.setVersion(7L);
+
+        StepVerifier.create(movieInfoService.bulkInsert(
+                        Flux.just(movieInfo("a"), movieInfo(""), movieInfo("b"), versioned), 2, 2, inserted::add))
+                .assertNext(result -> assertEquals(new MovieInfoBulkResult(1, null, MovieInfoBulkResult.Status.INVALID,
+                        "movieInfo.name must be present"), result))
+                .assertNext(result -> assertEquals(MovieInfoBulkResult.Status.CREATED, result.status()))
+                .assertNext(result -> assertEquals(2L, result.index()))
+                .assertNext(result -> assertEquals(3L, result.index()))
+                .verifyComplete();
+        verify(bulkOperations, times(2)).execute();
+        assertEquals(List.of(1, 2), inserted.stream().map(List::size).toList());
+        assertTrue(inserted.stream().flatMap(List::stream).allMatch(movieInfo -> movieInfo.getMovieInfoId() != null
+                && movieInfo.getVersion() == 0L));
+        assertEquals(3, movieInfoSearchIndex.size());
+    }
+
+    @Test
+    void everyFailedRecordOfABatchIsReportedFromOneRoundTrip() {
+        var duplicates = new MongoBulkWriteException(BulkWriteResult.acknowledged(1, 0, 0, 0, List.of(), List.of()),
+                List.of(new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 0),
+                        new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 2)),
+                null, new ServerAddress(), Set.of());
+        when(bulkOperations.execute()).thenReturn(Mono.error(new DuplicateKeyException("duplicate key", duplicates)));
+        var inserted = new ArrayList<MovieInfo>();
+
+        StepVerifier.create(movieInfoService.bulkInsert(
+                                Flux.just(movieInfo("a"), movieInfo("b"), movieInfo("c")), 10, 1, inserted::addAll)
+                        .map(MovieInfoBulkResult::status))
+                .expectNext(MovieInfoBulkResult.Status.FAILED, MovieInfoBulkResult.Status.CREATED, MovieInfoBulkResult.Status.FAILED)
+                .verifyComplete();
+        verify(bulkOperations, times(1)).execute();
+        assertEquals(List.of("b"), inserted.stream().map(MovieInfo::getName).toList());
+    }
+}
@@ -0,0 +1,165 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.ReplayExpiredException;
+import com.reactivespring.exception.SlowSubscriberException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+class MovieInfoStreamHubTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    // started at the clock's epoch, so locally assigned ids count up from 1
+    MovieInfoStreamHub hub(OverflowPolicy overflowPolicy) {
+        var hub = new MovieInfoStreamHub(100, Duration.ofMinutes(5), 2, overflowPolicy, meterRegistry,
+                Clock.fixed(Instant.EPOCH, ZoneOffset.UTC));
+        hub.registerGauges();
+        return hub;
+    }
+
+    static MovieInfo movieInfo(String movieInfoId) {
+        return new MovieInfo(movieInfoId, "Batman Begins", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+
+    @Test
+    void concurrentPublishesAreAllDelivered() {
+        var hub = new MovieInfoStreamHub(10_000, Duration.ofMinutes(5), 10_000, OverflowPolicy.DISCONNECT,
+                meterRegistry, Clock.systemUTC());
+        var events = hub.subscribe(null);
+
+        StepVerifier.create(events.take(1000).map(MovieInfoEvent::id).distinct().count())
+                .then(() -> Flux.range(0, 1000)
+                        .parallel(8)
+                        .runOn(Schedulers.parallel())
+                        .doOnNext(i -> hub.publish(MovieInfoEvent.Type.INSERT, movieInfo("id" + i)))
+                        .sequential()
+                        .blockLast())
+                .expectNext(1000L)
+                .verifyComplete();
+    }
+
+    @Test
+    void publishingThreadDoesNotDeliver() {
+        var hub = hub(OverflowPolicy.DISCONNECT);
+        var publishingThread = Thread.currentThread();
+
+        StepVerifier.create(hub.subscribe(null).map(event -> Thread.currentThread()))
+                .then(() -> hub.publish(MovieInfoEvent.Type.INSERT, movieInfo("a")))
+                .assertNext(deliveringThread -> assertNotSame(publishingThread, deliveringThread))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void externalIdsOnlyMoveForward() {
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+
+        assertEquals(100L, hub.publish(100, MovieInfoEvent.Type.INSERT, movieInfo("a")).id());
+        assertEquals(101L, hub.publish(MovieInfoEvent.Type.UPDATE, movieInfo("a")).id());
+        assertEquals(102L, hub.publish(50, MovieInfoEvent.Type.DELETE, movieInfo("a")).id());
+    }
+
+    @Test
+    void idsFromBeforeARestartAreNotResumable() {
+        var beforeRestart = new MovieInfoStreamHub(100, Duration.ofMinutes(5), 2, OverflowPolicy.DROP_OLDEST,
+                meterRegistry, Clock.fixed(Instant.parse("2024-01-01T00:00:00Z"), ZoneOffset.UTC));
+        var lastSeen = IntStream.range(0, 3)
+                .mapToLong(i -> beforeRestart.publish(MovieInfoEvent.Type.INSERT, movieInfo("id" + i)).id())
+                .max().orElseThrow();
+
+        var restarted = new MovieInfoStreamHub(100, Duration.ofMinutes(5), 2, OverflowPolicy.DROP_OLDEST,
+                meterRegistry, Clock.fixed(Instant.parse("2024-01-01T00:00:01Z"), ZoneOffset.UTC));
+        IntStream.range(0, 5).forEach(i -> restarted.publish(MovieInfoEvent.Type.INSERT, movieInfo("id" + i)));
+
+        StepVerifier.create(restarted.subscribe(lastSeen))
+                .expectError(ReplayExpiredException.class)
+                .verify();
+    }
+
+    @Test
+    void lagIsCountedInEventsWhateverTheIds() {
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+        // change stream cluster times, seconds in the high word and an increment in the low one
+        var clusterTime = 1_700_000_000L << 32;
+
+        StepVerifier.create(hub.subscribe(null), 0)
+                .then(() -> {
+                    hub.publish(clusterTime | 1, MovieInfoEvent.Type.INSERT, movieInfo("a"));
+                    hub.publish(clusterTime | 2, MovieInfoEvent.Type.UPDATE, movieInfo("a"));
+                })
+                .then(() -> assertEquals(2.0, meterRegistry.get("movieinfo.stream.lag").gauge().value()))
+                .thenRequest(1)
+                .expectNextCount(1)
+                .then(() -> assertEquals(1.0, meterRegistry.get("movieinfo.stream.lag").gauge().value()))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void publishAllDeliversTheBatchInOrder() {
+        var hub = hub(OverflowPolicy.DISCONNECT);
+
+        StepVerifier.create(hub.subscribe(null).map(event -> event.movieInfo().getMovieInfoId()))
+                .then(() -> hub.publishAll(MovieInfoEvent.Type.INSERT, List.of(movieInfo("a"), movieInfo("b"))))
+                .expectNext("a", "b")
+                .thenCancel()
+                .verify();
+        assertEquals(3L, hub.publish(MovieInfoEvent.Type.UPDATE, movieInfo("a")).id());
+    }
+
+    @Test
+    void slowSubscriberDropsOldest() {
+        var hub = hub(OverflowPolicy.DROP_OLDEST);
+
+        StepVerifier.create(hub.subscribe(0L).map(event -> event.movieInfo().getMovieInfoId()), 0)
+                .then(() -> IntStream.range(0, 4).forEach(i -> hub.publish(MovieInfoEvent.Type.INSERT, movieInfo("id" + i))))
+                .thenRequest(2)
+                .expectNext("id2", "id3")
+                .thenCancel()
+                .verify();
+        assertEquals(2.0, meterRegistry.get("movieinfo.stream.overflow").tag("outcome", "dropped").counter().count());
+    }
+
+    @Test
+    void slowSubscriberConflatesByMovieInfoId() {
+        var hub = hub(OverflowPolicy.CONFLATE);
+
+        StepVerifier.create(hub.subscribe(0L).map(MovieInfoEvent::id), 0)
+                .then(() -> {
+                    hub.publish(MovieInfoEvent.Type.INSERT, movieInfo("a"));
+                    hub.publish(MovieInfoEvent.Type.INSERT, movieInfo("b"));
+                    hub.publish(MovieInfoEvent.Type.INSERT, movieInfo("a"));
+                })
+                .thenRequest(2)
+                .expectNext(2L, 3L)
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void slowSubscriberIsDisconnected() {
+        var hub = hub(OverflowPolicy.DISCONNECT);
+
+        StepVerifier.create(hub.subscribe(0L), 0)
+                .then(() -> IntStream.range(0, 3).forEach(i -> hub.publish(MovieInfoEvent.Type.INSERT, movieInfo("id" + i))))
+                .expectError(SlowSubscriberException.class)
+                .verify();
+        assertEquals(0.0, meterRegistry.get("movieinfo.stream.subscribers").gauge().value());
+    }
+}
@@ -0,0 +1,41 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.InvalidPageRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PageCursorTest {
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christian Bale"), LocalDate.parse("2012-07-20"));
+
+    @Test
+    void roundTripsTheTypedSortValue() {
+        var sort = MovieInfoSort.parse("-releaseDate");
+
+        var cursor = PageCursor.decode(PageCursor.after(sort, movieInfo), sort);
+
+        assertEquals(LocalDate.parse("2012-07-20"), cursor.value());
+        assertEquals("abc", cursor.id());
+    }
+
+    @Test
+    void cursorIsOnlyValidForItsOwnSort() {
+        var encoded = PageCursor.after(MovieInfoSort.parse("year"), movieInfo);
+
+        assertThrows(InvalidPageRequestException.class, () -> PageCursor.decode(encoded, MovieInfoSort.parse("-year")));
+        assertThrows(InvalidPageRequestException.class, () -> PageCursor.decode("not-a-cursor", MovieInfoSort.DEFAULT));
+    }
+
+    @Test
+    void sortIsTieBrokenOnMovieInfoId() {
+        assertEquals("name: ASC,movieInfoId: ASC", MovieInfoSort.parse("name").toSort().toString());
+        assertEquals("movieInfoId: DESC", MovieInfoSort.parse("-id").toSort().toString());
+        assertThrows(InvalidPageRequestException.class, () -> MovieInfoSort.parse("cast"));
+    }
+}
@@ -10,12 +10,16 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.reactive.function.server.ServerRequest;
 import org.springframework.web.reactive.function.server.ServerResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.stream.Collectors;
 
 @Component
@@ -23,6 +27,12 @@ import java.util.stream.Collectors;
 @Slf4j
 public class ReviewHandler {
 
+    // the reviews are a Flux, so Smile is only offered in its streaming form
+    public static final MediaType APPLICATION_STREAM_SMILE = new MediaType("application", "stream+x-jackson-smile");
+
+    private static final List<MediaType> PRODUCIBLE_MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_NDJSON, APPLICATION_STREAM_SMILE);
+
     @Autowired
     final private Validator validator;
 
@@ -31,10 +41,21 @@ public class ReviewHandler {
     public Mono<ServerResponse> addReview(ServerRequest request) {
         return request.bodyToMono(Review.class)
                 .doOnNext(this::validate)
-                .flatMap(reviewReactiveRepository::save)
+                .flatMap(this::create)
                 .flatMap(ServerResponse.status(HttpStatus.CREATED)::bodyValue);
     }
 
+    // the version always comes from the stored review, a posted one with an existing id replaces it
+    private Mono<Review> create(Review review) {
+        review.setVersion(null);
+        if (review.getReviewId() == null) {
+            return reviewReactiveRepository.save(review);
+        }
+        return reviewReactiveRepository.findById(review.getReviewId())
+                .doOnNext(stored -> review.setVersion(stored.getVersion()))
+                .then(Mono.defer(() -> reviewReactiveRepository.save(review)));
+    }
+
     private void validate(Review review) {
         var constraintViolations = validator.validate(review);
         log.info("constraintViolations: {}", constraintViolations);
@@ -50,17 +71,43 @@ public class ReviewHandler {
 
     public Mono<ServerResponse> getReviews(ServerRequest request) {
         var movieInfoId = request.queryParam("movieInfoId");
-        Flux<Review> reviewsFlux;
+        var contentType = negotiateContentType(request);
         if(movieInfoId.isPresent()) {
-            reviewsFlux = reviewReactiveRepository.findReviewsByMovieInfoId(Long.valueOf(movieInfoId.get())).log();
-        } else {
-            reviewsFlux = reviewReactiveRepository.findAll();
+            var reviewsFlux = reviewReactiveRepository.findReviewsByMovieInfoId(Long.valueOf(movieInfoId.get())).log();
+            if (contentType.equals(MediaType.APPLICATION_NDJSON)) {
+                return getResponseMono(contentType, reviewsFlux);
+            }
+            // one movie's reviews are collected so the response can carry an ETag, a matching If-None-Match gets a 304
+            return reviewsFlux.collectList()
+                    .flatMap(reviews -> ServerResponse.ok()
+                            .contentType(contentType)
+                            .eTag(eTag(reviews))
+                            .bodyValue(reviews));
         }
-        return getResponseMono(reviewsFlux);
+        return getResponseMono(contentType, reviewReactiveRepository.findAll());
+    }
+
+    private static Mono<ServerResponse> getResponseMono(MediaType contentType, Flux<Review> reviewsFlux) {
+        return ServerResponse.ok()
+                .contentType(contentType)
+                .body(reviewsFlux, Review.class);
+    }
+
+    // strong validator over the id and version of every review, so any add, update or delete changes it
+    static String eTag(List<Review> reviews) {
+        var versions = reviews.stream()
+                .map(review -> review.getReviewId() + ":" + (review.getVersion() != null
+                        ? review.getVersion() : "h" + Integer.toHexString(review.hashCode())))
+                .collect(Collectors.joining(","));
+        return "\"" + DigestUtils.md5DigestAsHex(versions.getBytes(StandardCharsets.UTF_8)) + "\"";
     }
 
-    private static Mono<ServerResponse> getResponseMono(Flux<Review> reviewsFlux) {
-        return ServerResponse.ok().body(reviewsFlux, Review.class);
+    // functional endpoints do not negotiate on their own, so pick the first producible type the caller accepts
+    private static MediaType negotiateContentType(ServerRequest request) {
+        return request.headers().accept().stream()
+                .flatMap(accepted -> PRODUCIBLE_MEDIA_TYPES.stream().filter(accepted::includes))
+                .findFirst()
+                .orElse(MediaType.APPLICATION_JSON);
     }
 
     public Mono<ServerResponse> updateReview(ServerRequest request) {
@@ -0,0 +1,39 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Every index the review queries rely on, ensured before the service takes traffic.
+ * findReviewsByMovieInfoId is the hot path of every movie lookup.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReviewIndexes {
+
+    public static final List<Index> INDEXES = List.of(
+            new Index().on("movieInfoId", Sort.Direction.ASC).named("movieInfoId"));
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    // fails startup rather than serving without it, a review lookup with no index scans every review
+    @PostConstruct
+    public void ensureIndexes() {
+        var indexOps = reactiveMongoTemplate.indexOps(Review.class);
+        var ensured = Flux.fromIterable(INDEXES)
+                .concatMap(indexOps::ensureIndex)
+                .collectList()
+                .block();
+        log.info("Ensured review indexes {}", ensured);
+    }
+}
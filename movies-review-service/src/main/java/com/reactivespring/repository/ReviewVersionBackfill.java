@@ -0,0 +1,31 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sets version 0 on the reviews written before they were versioned, ahead of the first request.
+ * Without it an update of one of them is saved as an insert and fails on the duplicate id.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ReviewVersionBackfill {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @PostConstruct
+    public void backfill() {
+        var result = reactiveMongoTemplate.updateMulti(Query.query(Criteria.where("version").exists(false)),
+                        Update.update("version", 0L), Review.class)
+                .block();
+        log.info("Backfilled the version of {} reviews", result != null ? result.getModifiedCount() : 0);
+    }
+}
@@ -0,0 +1,65 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.Review;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+// every query shape the handler issues has to be answered from an index, a COLLSCAN in its plan fails the build
+@DataMongoTest
+@ActiveProfiles("test")
+@Import(ReviewIndexes.class)
+class ReviewIndexesTest {
+
+    @Autowired
+    ReviewReactiveRepository reviewReactiveRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        var reviewsList = List.of(
+                new Review(null, 1L, "Awesome movie", 9.0),
+                new Review(null, 1L, "good movie", 8.0),
+                new Review("abc", 2L, "nice movie", 9.0));
+        reviewReactiveRepository.saveAll(reviewsList).blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reviewReactiveRepository.deleteAll().block();
+    }
+
+    @Test
+    void findReviewsByMovieInfoId() {
+        var filter = new Document("movieInfoId", 1L);
+        var explain = reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(Review.class))
+                .flatMap(collection -> Mono.from(collection.find(filter).explain()))
+                .block();
+        var winningPlan = explain.get("queryPlanner", Document.class).get("winningPlan", Document.class);
+        assertFalse(hasCollectionScan(winningPlan), "Collection scan for " + filter.toJson() + " : " + winningPlan.toJson());
+    }
+
+    // the plan is a tree of stages, the shape of it differs between server versions
+    private static boolean hasCollectionScan(Object plan) {
+        if (plan instanceof Document stage) {
+            return "COLLSCAN".equals(stage.get("stage")) || stage.values().stream().anyMatch(ReviewIndexesTest::hasCollectionScan);
+        }
+        if (plan instanceof List<?> stages) {
+            return stages.stream().anyMatch(ReviewIndexesTest::hasCollectionScan);
+        }
+        return false;
+    }
+}
@@ -2,12 +2,15 @@ package com.reactivespring.routes;
 
 import com.reactivespring.domain.Review;
 import com.reactivespring.repository.ReviewReactiveRepository;
+import com.reactivespring.repository.ReviewVersionBackfill;
+import org.bson.Document;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -29,6 +32,12 @@ public class ReviewsIntegrationTest {
     @Autowired
     ReviewReactiveRepository reviewReactiveRepository;
 
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    ReviewVersionBackfill reviewVersionBackfill;
+
     @BeforeEach
     void setUp() {
 
@@ -104,6 +113,42 @@ public class ReviewsIntegrationTest {
                 });
     }
 
+    @Test
+    void updateReviewStoredWithoutVersion() {
+        reactiveMongoTemplate.insert(new Document("_id", "legacy").append("movieInfoId", 2L).append("comment", "nice movie")
+                .append("rating", 9.0), reactiveMongoTemplate.getCollectionName(Review.class)).block();
+        reviewVersionBackfill.backfill();
+        final var review = new Review("legacy", 2L, "nice movie review", 9.0);
+
+        webTestClient.put().uri(REVIEWS_PATH+"/{id}","legacy")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(Review.class)
+                .consumeWith(result -> {
+                    var review1 = result.getResponseBody();
+                    assert review1 != null;
+                    assertEquals("nice movie review", review1.getComment());
+                    assertEquals(1L, review1.getVersion());
+                });
+    }
+
+    @Test
+    void addReviewWithAnExistingIdAndClientVersion() {
+        final var review = new Review("abc", 2L, "nice movie, seen it twice", 9.5, 42L);
+
+        webTestClient.post().uri(REVIEWS_PATH)
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(Review.class)
+                .consumeWith(result -> assertEquals(1L, result.getResponseBody().getVersion()));
+
+        assertEquals(3L, reviewReactiveRepository.count().block());
+    }
+
     @Test
     void deleteReview() {
         webTestClient.delete().uri(REVIEWS_PATH+"/{id}","abc")
@@ -8,12 +8,14 @@ import com.reactivespring.router.ReviewRouter;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.*;
 
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.reactive.server.WebTestClient;
@@ -57,6 +59,22 @@ public class ReviewsUnitTest {
                 });
     }
 
+    @Test
+    void addReviewIgnoresTheClientVersion() {
+        var review = new Review(null, 3L, "Awesome movie", 8.0, 42L);
+        Mockito.when(reviewReactiveRepository.save(isA(Review.class)))
+                .thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+
+        webTestClient.post()
+                .uri("/v1/reviews")
+                .bodyValue(review)
+                .exchange()
+                .expectStatus()
+                .isCreated();
+
+        Mockito.verify(reviewReactiveRepository).save(argThat(saved -> saved.getVersion() == null));
+    }
+
     @Test
     void addReviewValidation() {
         var review = new Review(null, null, "Awesome movie", -2.0);
@@ -83,6 +101,47 @@ public class ReviewsUnitTest {
                 .uri(uri).exchange().expectStatus().is2xxSuccessful().expectBodyList(Review.class).hasSize(2);
     }
 
+    @Test
+    void getReviews_smile() {
+        var uri = UriComponentsBuilder.fromUriString(REVIEWS_PATH)
+                .queryParam("movieInfoId", 1).buildAndExpand().toUri();
+        Mockito.when(reviewReactiveRepository.findReviewsByMovieInfoId(1L))
+                .thenReturn(Flux.fromIterable(List.of(new Review("abc", 1L, "Awesome movie", 8.0),
+                        new Review("abd", 1L, "Awesome ", 8.0))));
+
+        webTestClient.get()
+                .uri(uri)
+                .accept(ReviewHandler.APPLICATION_STREAM_SMILE, MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .expectHeader().contentType(ReviewHandler.APPLICATION_STREAM_SMILE)
+                .expectBodyList(Review.class).hasSize(2);
+    }
+
+    @Test
+    void getReviews_notModified() {
+        var uri = UriComponentsBuilder.fromUriString(REVIEWS_PATH)
+                .queryParam("movieInfoId", 1).buildAndExpand().toUri();
+        Mockito.when(reviewReactiveRepository.findReviewsByMovieInfoId(1L))
+                .thenAnswer(invocation -> Flux.fromIterable(List.of(new Review("abc", 1L, "Awesome movie", 8.0, 0L),
+                        new Review("abd", 1L, "Awesome ", 8.0, 2L))));
+
+        var eTag = webTestClient.get()
+                .uri(uri)
+                .exchange()
+                .expectStatus().is2xxSuccessful()
+                .returnResult(Review.class)
+                .getResponseHeaders().getETag();
+        assertNotNull(eTag);
+
+        webTestClient.get()
+                .uri(uri)
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
     @Test
     void getReviews1() {
 
@@ -0,0 +1,177 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.client.Conditional;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.ReviewsClientException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Last good copy of each part of a Movie aggregate. Fresh values are served as is, stale
+ * values are served while a background call revalidates them, and older values are still
+ * served when the downstream call fails, each within the limits of that field's
+ * {@link StalenessPolicy}. A stale value is revalidated with the ETag it was fetched with,
+ * so a 304 only renews it.
+ */
+@Component
+@Slf4j
+public class MovieCache {
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final CachedField<MovieInfo> movieInfo;
+    private final CachedField<List<Review>> reviews;
+
+    @Autowired
+    public MovieCache(@Value("${movieCache.enabled:true}") boolean enabled,
+                      @Value("${movieCache.maximumSize:10000}") long maximumSize,
+                      @Value("${movieCache.movieInfo.maxAge:1m}") Duration movieInfoMaxAge,
+                      @Value("${movieCache.movieInfo.staleWhileRevalidate:10m}") Duration movieInfoStaleWhileRevalidate,
+                      @Value("${movieCache.movieInfo.staleIfError:1h}") Duration movieInfoStaleIfError,
+                      @Value("${movieCache.reviews.maxAge:10s}") Duration reviewsMaxAge,
+                      @Value("${movieCache.reviews.staleWhileRevalidate:1m}") Duration reviewsStaleWhileRevalidate,
+                      @Value("${movieCache.reviews.staleIfError:10m}") Duration reviewsStaleIfError,
+                      MeterRegistry meterRegistry) {
+        this(enabled, maximumSize,
+                new StalenessPolicy(movieInfoMaxAge, movieInfoStaleWhileRevalidate, movieInfoStaleIfError),
+                new StalenessPolicy(reviewsMaxAge, reviewsStaleWhileRevalidate, reviewsStaleIfError),
+                meterRegistry, Clock.systemUTC());
+    }
+
+    MovieCache(boolean enabled, long maximumSize, StalenessPolicy movieInfoPolicy, StalenessPolicy reviewsPolicy,
+               MeterRegistry meterRegistry, Clock clock) {
+        this.enabled = enabled;
+        this.clock = clock;
+        this.movieInfo = new CachedField<>("movie.movieInfo", maximumSize, movieInfoPolicy, meterRegistry);
+        this.reviews = new CachedField<>("movie.reviews", maximumSize, reviewsPolicy, meterRegistry);
+    }
+
+    // fetch is handed the ETag of the cached copy, or null when there is nothing to revalidate
+    public Mono<MovieInfo> movieInfo(String movieId, Function<String, Mono<Conditional<MovieInfo>>> fetch) {
+        return resolve(movieInfo, movieId, fetch);
+    }
+
+    public Mono<List<Review>> reviews(String movieId, Function<String, Mono<Conditional<List<Review>>>> fetch) {
+        return resolve(reviews, movieId, fetch);
+    }
+
+    public void invalidate(String movieId) {
+        movieInfo.cache.invalidate(movieId);
+        reviews.cache.invalidate(movieId);
+    }
+
+    // the change feed knows better than any staleness policy, see MovieInfoCacheRefresher
+    public void invalidateMovieInfo(String movieId) {
+        movieInfo.cache.invalidate(movieId);
+    }
+
+    public void invalidateAllMovieInfos() {
+        movieInfo.cache.invalidateAll();
+    }
+
+    private <T> Mono<T> resolve(CachedField<T> field, String movieId, Function<String, Mono<Conditional<T>>> fetch) {
+        if (!enabled) {
+            return fetch.apply(null).mapNotNull(Conditional::value);
+        }
+        return Mono.defer(() -> {
+            var cached = field.cache.getIfPresent(movieId);
+            if (cached == null) {
+                return fetchAndStore(field, movieId, fetch, null);
+            }
+            var age = Duration.between(cached.fetchedAt(), clock.instant());
+            if (field.policy.isFresh(age)) {
+                return Mono.just(cached.value());
+            }
+            if (field.policy.canServeWhileRevalidating(age)) {
+                revalidateInBackground(field, movieId, fetch, cached);
+                return Mono.just(cached.value());
+            }
+            return fetchAndStore(field, movieId, fetch, cached)
+                    .onErrorResume(this::isDownstreamFailure, ex -> {
+                        if (!field.policy.canServeOnError(age)) {
+                            return Mono.error(ex);
+                        }
+                        log.warn("Serving {} for movie {} from cache, {} old, after : {}",
+                                field.name, movieId, age, ex.toString());
+                        return Mono.just(cached.value());
+                    });
+        });
+    }
+
+    private <T> Mono<T> fetchAndStore(CachedField<T> field, String movieId,
+                                      Function<String, Mono<Conditional<T>>> fetch, CachedValue<T> cached) {
+        return fetch.apply(cached == null ? null : cached.eTag())
+                .<T>handle((response, sink) -> {
+                    if (!response.isNotModified()) {
+                        field.cache.put(movieId, new CachedValue<>(response.value(), response.eTag(), clock.instant()));
+                        sink.next(response.value());
+                    } else if (cached != null) {
+                        field.notModified.increment();
+                        field.cache.put(movieId, new CachedValue<>(cached.value(), cached.eTag(), clock.instant()));
+                        sink.next(cached.value());
+                    }
+                })
+                .doOnError(ex -> !isDownstreamFailure(ex), ex -> field.cache.invalidate(movieId));
+    }
+
+    private <T> void revalidateInBackground(CachedField<T> field, String movieId,
+                                            Function<String, Mono<Conditional<T>>> fetch, CachedValue<T> cached) {
+        if (!field.revalidating.add(movieId)) {
+            return;
+        }
+        fetchAndStore(field, movieId, fetch, cached)
+                .doFinally(signalType -> field.revalidating.remove(movieId))
+                .subscribe(value -> { },
+                        ex -> log.warn("Background revalidation of {} for movie {} failed : {}",
+                                field.name, movieId, ex.toString()));
+    }
+
+    private boolean isDownstreamFailure(Throwable ex) {
+        return !(ex instanceof MoviesInfoClientException || ex instanceof ReviewsClientException);
+    }
+
+    private record CachedValue<T>(T value, String eTag, Instant fetchedAt) {
+    }
+
+    private static class CachedField<T> {
+
+        private final String name;
+        private final StalenessPolicy policy;
+        private final Cache<String, CachedValue<T>> cache;
+        private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+        private final Counter notModified;
+
+        CachedField(String name, long maximumSize, StalenessPolicy policy, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.policy = policy;
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(maximumSize)
+                    .expireAfterWrite(policy.retention())
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, name);
+            this.notModified = Counter.builder("cache.not.modified")
+                    .description("Stale entries renewed by a 304 instead of a full response")
+                    .tag("cache", name)
+                    .register(meterRegistry);
+        }
+    }
+}
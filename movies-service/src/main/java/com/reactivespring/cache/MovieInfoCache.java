@@ -0,0 +1,75 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Near cache in front of movies-info-service. Caffeine's W-TinyLFU admission keeps the
+ * frequently requested titles resident, while the TTL bounds staleness if the change
+ * feed consumed by {@link MovieInfoCacheRefresher} is unavailable.
+ */
+@Component
+@Slf4j
+public class MovieInfoCache {
+
+    private final boolean enabled;
+    private final Cache<String, MovieInfo> cache;
+
+    public MovieInfoCache(@Value("${movieInfoCache.enabled:true}") boolean enabled,
+                          @Value("${movieInfoCache.maximumSize:10000}") long maximumSize,
+                          @Value("${movieInfoCache.ttl:10m}") Duration ttl,
+                          MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "movieInfo");
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<MovieInfo> get(String movieId, Function<String, Mono<MovieInfo>> loader) {
+        if (!enabled) {
+            return loader.apply(movieId);
+        }
+        return Mono.defer(() -> {
+            var cached = cache.getIfPresent(movieId);
+            if (cached != null) {
+                return Mono.just(cached);
+            }
+            return loader.apply(movieId)
+                    .doOnNext(movieInfo -> cache.put(movieId, movieInfo));
+        });
+    }
+
+    public void refresh(MovieInfo movieInfo) {
+        if (movieInfo.getMovieInfoId() == null) {
+            return;
+        }
+        // only entries somebody has asked for are kept, the feed must not fill the cache
+        cache.asMap().computeIfPresent(movieInfo.getMovieInfoId(), (id, cached) -> movieInfo);
+    }
+
+    public void invalidate(String movieId) {
+        cache.invalidate(movieId);
+    }
+
+    public void invalidateAll() {
+        log.info("Invalidating all {} cached MovieInfo entries", cache.estimatedSize());
+        cache.invalidateAll();
+    }
+}
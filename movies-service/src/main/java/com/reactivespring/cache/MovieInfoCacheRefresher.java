@@ -0,0 +1,76 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.domain.MovieInfoEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+/**
+ * Keeps {@link MovieInfoCache} in line with movies-info-service by following its
+ * /v1/movieinfos/stream change feed. Everything cached is dropped whenever the feed
+ * (re)connects, since changes published while disconnected are not seen. The MovieInfos
+ * that {@link MovieCache} holds in front of it are evicted along with them, otherwise a
+ * changed MovieInfo would still be served from there for up to its maxAge, and a deleted
+ * movie takes its reviews out of MovieCache too.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MovieInfoCacheRefresher {
+
+    final private MovieInfoCache movieInfoCache;
+    final private MovieCache movieCache;
+    final private MoviesInfoRestClient moviesInfoRestClient;
+
+    private Disposable subscription;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void subscribe() {
+        if (!movieInfoCache.isEnabled()) {
+            return;
+        }
+        subscription = Mono.fromRunnable(this::invalidateAll)
+                .thenMany(moviesInfoRestClient.retrieveMovieInfoStream())
+                .doOnNext(this::apply)
+                .doOnError(ex -> log.warn("MovieInfo change feed failed : {}", ex.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30)))
+                .repeatWhen(completed -> completed.delayElements(Duration.ofSeconds(1)))
+                .subscribe();
+    }
+
+    void apply(MovieInfoEvent event) {
+        var movieInfoId = event.movieInfo().getMovieInfoId();
+        if (movieInfoId == null) {
+            return;
+        }
+        if (event.type() == MovieInfoEvent.Type.DELETE) {
+            movieInfoCache.invalidate(movieInfoId);
+            movieCache.invalidate(movieInfoId);
+            return;
+        }
+        movieInfoCache.refresh(event.movieInfo());
+        movieCache.invalidateMovieInfo(movieInfoId);
+    }
+
+    void invalidateAll() {
+        movieInfoCache.invalidateAll();
+        movieCache.invalidateAllMovieInfos();
+    }
+
+    @PreDestroy
+    public void unsubscribe() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.reactivespring.cache;
+
+import java.time.Duration;
+
+/**
+ * RFC 5861 style freshness rules for one cached field. Both stale windows are measured
+ * from the end of {@code maxAge}.
+ */
+public record StalenessPolicy(Duration maxAge, Duration staleWhileRevalidate, Duration staleIfError) {
+
+    public boolean isFresh(Duration age) {
+        return age.compareTo(maxAge) <= 0;
+    }
+
+    public boolean canServeWhileRevalidating(Duration age) {
+        return age.compareTo(maxAge.plus(staleWhileRevalidate)) <= 0;
+    }
+
+    public boolean canServeOnError(Duration age) {
+        return age.compareTo(maxAge.plus(staleIfError)) <= 0;
+    }
+
+    public Duration retention() {
+        return maxAge.plus(staleWhileRevalidate.compareTo(staleIfError) > 0 ? staleWhileRevalidate : staleIfError);
+    }
+}
@@ -0,0 +1,16 @@
+package com.reactivespring.client;
+
+/**
+ * Result of a downstream GET that may have been revalidated with If-None-Match. A 304 carries
+ * no value, the caller keeps using the copy it already holds.
+ */
+public record Conditional<T>(T value, String eTag) {
+
+    public static <T> Conditional<T> notModified(String eTag) {
+        return new Conditional<>(null, eTag);
+    }
+
+    public boolean isNotModified() {
+        return value == null;
+    }
+}
@@ -1,38 +1,183 @@
 package com.reactivespring.client;
 
+import com.reactivespring.cache.MovieInfoCache;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoPage;
 import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
-import com.reactivespring.util.RetryUtil;
-import lombok.RequiredArgsConstructor;
+import com.reactivespring.util.Hedging;
+import com.reactivespring.util.JsonBytes;
+import com.reactivespring.util.RetryBudget;
+import com.reactivespring.util.SingleFlight;
+import com.reactivespring.util.SmileMediaTypes;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.util.retry.Retry;
 import reactor.util.retry.RetryBackoffSpec;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class MoviesInfoRestClient {
 
+    public static final String NEXT_CURSOR = "X-Next-Cursor";
+
     final private WebClient webClient;
+    final private WebClient streamWebClient;
+    final private SingleFlight<String, MovieInfo> singleFlight;
+    final private SingleFlight<String, byte[]> jsonSingleFlight;
+    final private SingleFlight<String, Conditional<MovieInfo>> conditionalSingleFlight;
+    final private MovieInfoCache movieInfoCache;
+    final private Retry retrySpec;
+    final private RetryBudget retryBudget;
+    final private Hedging hedging;
+    final private CircuitBreaker circuitBreaker;
+    final private Bulkhead bulkhead;
 
     @Value("${restClient.moviesInfoUrl}")
     private String moviesInfoUrl;
 
+    @Value("${restClient.binaryCodec:true}")
+    private boolean binaryCodec;
+
+    public MoviesInfoRestClient(@Qualifier("moviesInfoWebClient") WebClient webClient,
+                                @Qualifier("moviesInfoStreamWebClient") WebClient streamWebClient,
+                                MeterRegistry meterRegistry, MovieInfoCache movieInfoCache,
+                                @Qualifier("moviesInfoRetrySpec") Retry retrySpec, RetryBudget retryBudget,
+                                @Qualifier("moviesInfoHedging") Hedging hedging,
+                                CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry) {
+        this.webClient = webClient;
+        this.streamWebClient = streamWebClient;
+        this.singleFlight = new SingleFlight<>("moviesInfo", meterRegistry);
+        this.jsonSingleFlight = new SingleFlight<>("moviesInfo.json", meterRegistry);
+        this.conditionalSingleFlight = new SingleFlight<>("moviesInfo.conditional", meterRegistry);
+        this.movieInfoCache = movieInfoCache;
+        this.retrySpec = retrySpec;
+        this.retryBudget = retryBudget;
+        this.hedging = hedging;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("moviesInfo");
+        this.bulkhead = bulkheadRegistry.bulkhead("moviesInfo");
+    }
+
     public Mono<MovieInfo> retrieveMovieInfo(String movieId) {
-        var url = moviesInfoUrl.concat("/id/{id}");
+        return movieInfoCache.get(movieId,
+                id -> singleFlight.execute(id, () -> fetchMovieInfo(id, MovieInfo.class, null,
+                        SmileMediaTypes.acceptable(binaryCodec, SmileMediaTypes.APPLICATION_SMILE, MediaType.APPLICATION_JSON))
+                        .mapNotNull(HttpEntity::getBody)));
+    }
+
+    // with the near cache on there is nothing to revalidate, it is kept current by the change stream
+    public Mono<Conditional<MovieInfo>> retrieveMovieInfo(String movieId, String ifNoneMatch) {
+        if (ifNoneMatch == null && movieInfoCache.isEnabled()) {
+            return retrieveMovieInfo(movieId).map(movieInfo -> new Conditional<>(movieInfo, null));
+        }
+        var key = ifNoneMatch == null ? movieId : movieId + " " + ifNoneMatch;
+        return conditionalSingleFlight.execute(key, () -> fetchMovieInfo(movieId, MovieInfo.class, ifNoneMatch,
+                        SmileMediaTypes.acceptable(binaryCodec, SmileMediaTypes.APPLICATION_SMILE, MediaType.APPLICATION_JSON))
+                .handle((responseEntity, sink) -> {
+                    var eTag = responseEntity.getHeaders().getETag();
+                    if (responseEntity.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                        sink.next(Conditional.notModified(eTag));
+                    } else if (responseEntity.getBody() != null) {
+                        sink.next(new Conditional<>(responseEntity.getBody(), eTag));
+                    }
+                }));
+    }
+
+    // the undecoded body for passthrough aggregation, aggregated into one array so coalesced callers
+    // can share it, it does not go through the MovieInfo cache
+    public Mono<byte[]> retrieveMovieInfoJson(String movieId) {
+        return jsonSingleFlight.execute(movieId, () -> fetchMovieInfo(movieId, byte[].class, null, MediaType.APPLICATION_JSON)
+                        .mapNotNull(HttpEntity::getBody))
+                .handle((json, sink) -> {
+                    if (JsonBytes.isEnclosed(json, '{', '}')) {
+                        sink.next(json);
+                    } else {
+                        sink.error(new MoviesInfoServerException(
+                                "Malformed MovieInfo response for the passed in Id : " + movieId));
+                    }
+                });
+    }
+
+    // cursor is the opaque NEXT_CURSOR of the previous page, null for the first one
+    public Mono<MovieInfoPage> retrieveMovieInfoPage(String cursor, int limit) {
+        var url = UriComponentsBuilder.fromUriString(moviesInfoUrl)
+                .queryParam("limit", limit)
+                .queryParamIfPresent("after", Optional.ofNullable(cursor))
+                .buildAndExpand().toUriString();
 
         return webClient.get()
+                .uri(url)
+                .accept(SmileMediaTypes.acceptable(binaryCodec, SmileMediaTypes.APPLICATION_STREAM_SMILE, MediaType.APPLICATION_JSON))
+                .retrieve()
+                // a rejected cursor or limit is the caller's to fix, it is passed on and never retried
+                .onStatus(HttpStatusCode::is4xxClientError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .defaultIfEmpty(clientResponse.statusCode().toString())
+                        .flatMap(responseMessage -> Mono.error(new MoviesInfoClientException(
+                                responseMessage, clientResponse.statusCode().value()
+                        ))))
+                .onStatus(HttpStatusCode::is5xxServerError, clientResponse -> clientResponse.bodyToMono(String.class)
+                        .flatMap(responseMessage -> Mono.error(new MoviesInfoServerException(
+                                "Server Exception in MoviesInfoService " + responseMessage
+                        ))))
+                .toEntityList(MovieInfo.class)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retrySpec)
+                .doOnSubscribe(subscription -> retryBudget.recordRequest())
+                .map(responseEntity -> new MovieInfoPage(
+                        responseEntity.getBody() == null ? List.of() : responseEntity.getBody(),
+                        responseEntity.getHeaders().getFirst(NEXT_CURSOR)));
+    }
+
+    // the SSE form of the feed is the only one that names the event type, deletes included
+    public Flux<MovieInfoEvent> retrieveMovieInfoStream() {
+        return streamWebClient.get()
+                .uri(moviesInfoUrl.concat("/stream"))
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<MovieInfo>>() {})
+                .filter(event -> event.data() != null && event.event() != null)
+                .map(event -> new MovieInfoEvent(MovieInfoEvent.Type.valueOf(event.event().toUpperCase(Locale.ROOT)), event.data()));
+    }
+
+    private <T> Mono<ResponseEntity<T>> fetchMovieInfo(String movieId, Class<T> bodyType, String ifNoneMatch,
+                                                        MediaType... acceptableMediaTypes) {
+        var url = moviesInfoUrl.concat("/id/{id}");
+
+        return hedging.hedge(() -> webClient.get()
                 .uri(url, movieId)
+                .accept(acceptableMediaTypes)
+                .headers(headers -> {
+                    if (ifNoneMatch != null) {
+                        headers.setIfNoneMatch(ifNoneMatch);
+                    }
+                })
                 .retrieve()
                 .onStatus(HttpStatusCode::is4xxClientError,clientResponse -> {
                     if(clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
@@ -52,8 +197,11 @@ public class MoviesInfoRestClient {
                                     "Server Exception in MoviesInfoService " + responseMessage
                             )));
                 })
-                .bodyToMono(MovieInfo.class)
-                .retryWhen(RetryUtil.retrySpec())
+                .toEntity(bodyType)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker)))
+                .retryWhen(retrySpec)
+                .doOnSubscribe(subscription -> retryBudget.recordRequest())
+                .transformDeferred(BulkheadOperator.of(bulkhead))
                 .log();
     }
 
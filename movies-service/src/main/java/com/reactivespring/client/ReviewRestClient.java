@@ -5,36 +5,145 @@ import com.reactivespring.exception.MoviesInfoClientException;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsClientException;
 import com.reactivespring.exception.ReviewsServerException;
-import com.reactivespring.util.RetryUtil;
-import lombok.RequiredArgsConstructor;
+import com.reactivespring.util.Hedging;
+import com.reactivespring.util.JsonBytes;
+import com.reactivespring.util.RetryBudget;
+import com.reactivespring.util.SingleFlight;
+import com.reactivespring.util.SmileMediaTypes;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.util.UriComponentsBuilder;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.util.List;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class ReviewRestClient {
 
     final private WebClient webClient;
+    final private SingleFlight<String, Conditional<List<Review>>> singleFlight;
+    final private SingleFlight<String, byte[]> jsonSingleFlight;
+    final private Retry retrySpec;
+    final private RetryBudget retryBudget;
+    final private Hedging hedging;
+    final private CircuitBreaker circuitBreaker;
+    final private Bulkhead bulkhead;
 
     @Value("${restClient.reviewsUrl}")
     private String reviewsUrl;
 
+    @Value("${restClient.binaryCodec:true}")
+    private boolean binaryCodec;
+
+    public ReviewRestClient(@Qualifier("reviewsWebClient") WebClient webClient, MeterRegistry meterRegistry,
+                            @Qualifier("reviewsRetrySpec") Retry retrySpec, RetryBudget retryBudget,
+                            @Qualifier("reviewsHedging") Hedging hedging,
+                            CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry) {
+        this.webClient = webClient;
+        this.singleFlight = new SingleFlight<>("reviews", meterRegistry);
+        this.jsonSingleFlight = new SingleFlight<>("reviews.json", meterRegistry);
+        this.retrySpec = retrySpec;
+        this.retryBudget = retryBudget;
+        this.hedging = hedging;
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("reviews");
+        this.bulkhead = bulkheadRegistry.bulkhead("reviews");
+    }
 
     public Flux<Review> retrieveReviews(String movieId) {
+        return retrieveReviews(movieId, null)
+                .mapNotNull(Conditional::value)
+                .flatMapIterable(reviews -> reviews);
+    }
+
+    public Mono<Conditional<List<Review>>> retrieveReviews(String movieId, String ifNoneMatch) {
+        var key = ifNoneMatch == null ? movieId : movieId + " " + ifNoneMatch;
+        return singleFlight.execute(key, () -> fetchReviews(movieId, ifNoneMatch));
+    }
+
+    // the undecoded JSON array for passthrough aggregation, aggregated into one byte array so coalesced
+    // callers can share it, a 404 becomes an empty array
+    public Mono<byte[]> retrieveReviewsJson(String movieId) {
+        return jsonSingleFlight.execute(movieId, () -> fetchReviewsJson(movieId))
+                .handle((json, sink) -> {
+                    if (JsonBytes.isEnclosed(json, '[', ']')) {
+                        sink.next(json);
+                    } else {
+                        sink.error(new ReviewsServerException(
+                                "Malformed reviews response for the passed in Id : " + movieId));
+                    }
+                });
+    }
+
+    public Flux<Review> streamReviews(String movieId) {
+        // only the response status is retried, a body that fails half way through is not replayed
+        return retrieve(movieId, null, SmileMediaTypes.acceptable(binaryCodec, SmileMediaTypes.APPLICATION_STREAM_SMILE, MediaType.APPLICATION_NDJSON))
+                .toEntityFlux(Review.class)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker))
+                .retryWhen(retrySpec)
+                .doOnSubscribe(subscription -> retryBudget.recordRequest())
+                .flatMapMany(responseEntity -> responseEntity.getBody() == null
+                        ? Flux.empty() : responseEntity.getBody())
+                .transformDeferred(BulkheadOperator.of(bulkhead));
+    }
+
+    private Mono<Conditional<List<Review>>> fetchReviews(String movieId, String ifNoneMatch) {
+        return hedging.hedge(() -> retrieve(movieId, ifNoneMatch,
+                        SmileMediaTypes.acceptable(binaryCodec, SmileMediaTypes.APPLICATION_STREAM_SMILE, MediaType.APPLICATION_JSON))
+                .toEntityList(Review.class)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker)))
+                .retryWhen(retrySpec)
+                .doOnSubscribe(subscription -> retryBudget.recordRequest())
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .map(responseEntity -> {
+                    var eTag = responseEntity.getHeaders().getETag();
+                    if (responseEntity.getStatusCode().isSameCodeAs(HttpStatus.NOT_MODIFIED)) {
+                        return Conditional.notModified(eTag);
+                    }
+                    return responseEntity.getStatusCode().is2xxSuccessful() && responseEntity.getBody() != null
+                            ? new Conditional<>(responseEntity.getBody(), eTag) : new Conditional<>(List.of(), null);
+                });
+    }
+
+    private Mono<byte[]> fetchReviewsJson(String movieId) {
+        return hedging.hedge(() -> retrieve(movieId, null, MediaType.APPLICATION_JSON)
+                .toEntity(byte[].class)
+                .transformDeferred(CircuitBreakerOperator.of(circuitBreaker)))
+                .retryWhen(retrySpec)
+                .doOnSubscribe(subscription -> retryBudget.recordRequest())
+                .transformDeferred(BulkheadOperator.of(bulkhead))
+                .map(responseEntity -> responseEntity.getStatusCode().is2xxSuccessful() && responseEntity.getBody() != null
+                        ? responseEntity.getBody() : JsonBytes.EMPTY_ARRAY);
+    }
+
+    private WebClient.ResponseSpec retrieve(String movieId, String ifNoneMatch, MediaType... acceptableMediaTypes) {
         var url = UriComponentsBuilder.fromUriString(reviewsUrl)
                 .queryParam("movieInfoId", movieId)
                 .buildAndExpand().toUriString();
 
         return webClient.get()
                 .uri(url)
+                .accept(acceptableMediaTypes)
+                .headers(headers -> {
+                    if (ifNoneMatch != null) {
+                        headers.setIfNoneMatch(ifNoneMatch);
+                    }
+                })
                 .retrieve()
                 .onStatus(HttpStatusCode::is4xxClientError, clientResponse -> {
                     if(clientResponse.statusCode().equals(HttpStatus.NOT_FOUND)) {
@@ -50,8 +159,6 @@ public class ReviewRestClient {
                             .flatMap(responseMessage -> Mono.error(new ReviewsServerException(
                                     "Server Exception in MovieReviewsService " + responseMessage
                             )));
-                })
-                .bodyToFlux(Review.class)
-                .retryWhen(RetryUtil.retrySpec());
+                });
     }
 }
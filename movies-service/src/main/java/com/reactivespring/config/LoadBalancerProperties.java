@@ -0,0 +1,26 @@
+package com.reactivespring.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@ConfigurationProperties(prefix = "load-balancer")
+public class LoadBalancerProperties {
+
+    private Downstream moviesInfo = new Downstream();
+    private Downstream reviews = new Downstream();
+
+    @Data
+    public static class Downstream {
+        // base urls such as http://host:8080, empty means the restClient url is called as is
+        private List<String> instances = new ArrayList<>();
+        private int consecutiveFailures = 5;
+        private Duration slowCallThreshold = Duration.ofSeconds(1);
+        private Duration baseEjectionTime = Duration.ofSeconds(30);
+        private int maxEjectionPercent = 50;
+    }
+}
@@ -0,0 +1,22 @@
+package com.reactivespring.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.metrics.RequestPhases;
+import com.reactivespring.metrics.TimedJackson2JsonEncoder;
+import org.springframework.boot.web.codec.CodecCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+@Configuration
+public class MetricsConfig {
+
+    // runs after Boot's own Jackson customizer so the timed encoder replaces the default one
+    @Bean
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    public CodecCustomizer timedJacksonCodecCustomizer(ObjectMapper objectMapper, RequestPhases requestPhases) {
+        return configurer -> configurer.defaultCodecs()
+                .jackson2JsonEncoder(new TimedJackson2JsonEncoder(objectMapper, requestPhases));
+    }
+}
@@ -0,0 +1,62 @@
+package com.reactivespring.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.core.registry.EntryAddedEvent;
+import io.github.resilience4j.core.registry.EntryRemovedEvent;
+import io.github.resilience4j.core.registry.EntryReplacedEvent;
+import io.github.resilience4j.core.registry.RegistryEventConsumer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class ResilienceConfig {
+
+    @Bean
+    public RegistryEventConsumer<CircuitBreaker> circuitBreakerStateLogger() {
+        return new RegistryEventConsumer<>() {
+            @Override
+            public void onEntryAddedEvent(EntryAddedEvent<CircuitBreaker> entryAddedEvent) {
+                var circuitBreaker = entryAddedEvent.getAddedEntry();
+                circuitBreaker.getEventPublisher()
+                        .onStateTransition(event -> log.warn("Circuit breaker {} changed state : {}",
+                                event.getCircuitBreakerName(), event.getStateTransition()));
+            }
+
+            @Override
+            public void onEntryRemovedEvent(EntryRemovedEvent<CircuitBreaker> entryRemoveEvent) {
+            }
+
+            @Override
+            public void onEntryReplacedEvent(EntryReplacedEvent<CircuitBreaker> entryReplacedEvent) {
+            }
+        };
+    }
+
+    @Bean
+    public RegistryEventConsumer<Bulkhead> bulkheadRejectionCounter(MeterRegistry meterRegistry) {
+        return new RegistryEventConsumer<>() {
+            @Override
+            public void onEntryAddedEvent(EntryAddedEvent<Bulkhead> entryAddedEvent) {
+                var bulkhead = entryAddedEvent.getAddedEntry();
+                var rejected = Counter.builder("movies.client.bulkhead.rejected")
+                        .description("Calls rejected because the downstream bulkhead was full")
+                        .tag("client", bulkhead.getName())
+                        .register(meterRegistry);
+                bulkhead.getEventPublisher().onCallRejected(event -> rejected.increment());
+            }
+
+            @Override
+            public void onEntryRemovedEvent(EntryRemovedEvent<Bulkhead> entryRemoveEvent) {
+            }
+
+            @Override
+            public void onEntryReplacedEvent(EntryReplacedEvent<Bulkhead> entryReplacedEvent) {
+            }
+        };
+    }
+}
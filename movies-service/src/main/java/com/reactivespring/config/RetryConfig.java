@@ -0,0 +1,64 @@
+package com.reactivespring.config;
+
+import com.reactivespring.util.Hedging;
+import com.reactivespring.util.RetryBudget;
+import com.reactivespring.util.RetryUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+
+@Configuration
+public class RetryConfig {
+
+    @Bean
+    public RetryBudget retryBudget(@Value("${retry.budget.ratio:0.2}") double ratio,
+                                   @Value("${retry.budget.minRetriesPerSecond:10}") double minRetriesPerSecond,
+                                   @Value("${retry.budget.maxBalance:100}") double maxBalance,
+                                   MeterRegistry meterRegistry) {
+        var retryBudget = new RetryBudget(ratio, minRetriesPerSecond, maxBalance);
+        Gauge.builder("movies.client.retries.budget.balance", retryBudget, RetryBudget::balance)
+                .register(meterRegistry);
+        return retryBudget;
+    }
+
+    @Bean
+    public Retry moviesInfoRetrySpec(@Value("${retry.moviesInfo.maxAttempts:2}") long maxAttempts,
+                                     @Value("${retry.moviesInfo.minBackoff:200ms}") Duration minBackoff,
+                                     @Value("${retry.moviesInfo.maxBackoff:2s}") Duration maxBackoff,
+                                     @Value("${retry.moviesInfo.jitter:0.5}") double jitter,
+                                     RetryBudget retryBudget, MeterRegistry meterRegistry) {
+        return RetryUtil.retrySpec("moviesInfo", maxAttempts, minBackoff, maxBackoff, jitter, retryBudget, meterRegistry);
+    }
+
+    @Bean
+    public Retry reviewsRetrySpec(@Value("${retry.reviews.maxAttempts:2}") long maxAttempts,
+                                  @Value("${retry.reviews.minBackoff:200ms}") Duration minBackoff,
+                                  @Value("${retry.reviews.maxBackoff:2s}") Duration maxBackoff,
+                                  @Value("${retry.reviews.jitter:0.5}") double jitter,
+                                  RetryBudget retryBudget, MeterRegistry meterRegistry) {
+        return RetryUtil.retrySpec("reviews", maxAttempts, minBackoff, maxBackoff, jitter, retryBudget, meterRegistry);
+    }
+
+    @Bean
+    public Hedging moviesInfoHedging(@Value("${retry.moviesInfo.hedge.enabled:false}") boolean enabled,
+                                     @Value("${retry.moviesInfo.hedge.percentile:0.95}") double percentile,
+                                     @Value("${retry.moviesInfo.hedge.minDelay:50ms}") Duration minDelay,
+                                     @Value("${retry.moviesInfo.hedge.sampleSize:1024}") int sampleSize,
+                                     MeterRegistry meterRegistry) {
+        return new Hedging("moviesInfo", enabled, percentile, minDelay, sampleSize, meterRegistry);
+    }
+
+    @Bean
+    public Hedging reviewsHedging(@Value("${retry.reviews.hedge.enabled:false}") boolean enabled,
+                                  @Value("${retry.reviews.hedge.percentile:0.95}") double percentile,
+                                  @Value("${retry.reviews.hedge.minDelay:50ms}") Duration minDelay,
+                                  @Value("${retry.reviews.hedge.sampleSize:1024}") int sampleSize,
+                                  MeterRegistry meterRegistry) {
+        return new Hedging("reviews", enabled, percentile, minDelay, sampleSize, meterRegistry);
+    }
+}
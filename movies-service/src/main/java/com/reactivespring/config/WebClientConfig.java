@@ -1,14 +1,114 @@
 package com.reactivespring.config;
 
+import com.reactivespring.deadline.DeadlinePropagation;
+import com.reactivespring.loadbalancer.LoadBalancer;
+import io.netty.channel.ChannelOption;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.concurrent.TimeUnit;
 
 @Configuration
+@EnableConfigurationProperties({TransportProperties.class, LoadBalancerProperties.class})
 public class WebClientConfig {
 
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider moviesInfoConnectionProvider(TransportProperties transportProperties) {
+        return connectionProvider("moviesInfo", transportProperties.getMoviesInfo());
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider reviewsConnectionProvider(TransportProperties transportProperties) {
+        return connectionProvider("reviews", transportProperties.getReviews());
+    }
+
     @Bean
-    public WebClient webClient(WebClient.Builder builder) {
-        return builder.build();
+    public LoadBalancer moviesInfoLoadBalancer(LoadBalancerProperties loadBalancerProperties, MeterRegistry meterRegistry) {
+        return loadBalancer("moviesInfo", loadBalancerProperties.getMoviesInfo(), meterRegistry);
+    }
+
+    @Bean
+    public LoadBalancer reviewsLoadBalancer(LoadBalancerProperties loadBalancerProperties, MeterRegistry meterRegistry) {
+        return loadBalancer("reviews", loadBalancerProperties.getReviews(), meterRegistry);
+    }
+
+    @Bean
+    public WebClient moviesInfoWebClient(WebClient.Builder builder, TransportProperties transportProperties,
+                                         LoadBalancer moviesInfoLoadBalancer) {
+        var downstream = transportProperties.getMoviesInfo();
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(withTimeouts(
+                        httpClient(moviesInfoConnectionProvider(transportProperties), downstream), downstream)))
+                .filter(DeadlinePropagation.deadlinePropagation())
+                .filter(moviesInfoLoadBalancer.exchangeFilter())
+                .build();
+    }
+
+    // the change feed is idle most of the time, so it only gets the connect timeout
+    @Bean
+    public WebClient moviesInfoStreamWebClient(WebClient.Builder builder, TransportProperties transportProperties,
+                                               LoadBalancer moviesInfoLoadBalancer) {
+        var downstream = transportProperties.getMoviesInfo();
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(
+                        httpClient(moviesInfoConnectionProvider(transportProperties), downstream)))
+                .filter(moviesInfoLoadBalancer.exchangeFilter())
+                .build();
+    }
+
+    @Bean
+    public WebClient reviewsWebClient(WebClient.Builder builder, TransportProperties transportProperties,
+                                      LoadBalancer reviewsLoadBalancer) {
+        var downstream = transportProperties.getReviews();
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(withTimeouts(
+                        httpClient(reviewsConnectionProvider(transportProperties), downstream), downstream)))
+                .filter(DeadlinePropagation.deadlinePropagation())
+                .filter(reviewsLoadBalancer.exchangeFilter())
+                .build();
+    }
+
+    private LoadBalancer loadBalancer(String client, LoadBalancerProperties.Downstream downstream,
+                                      MeterRegistry meterRegistry) {
+        return new LoadBalancer(client, downstream.getInstances(), downstream.getConsecutiveFailures(),
+                downstream.getSlowCallThreshold(), downstream.getBaseEjectionTime(),
+                downstream.getMaxEjectionPercent(), meterRegistry);
+    }
+
+    private ConnectionProvider connectionProvider(String name, TransportProperties.Downstream downstream) {
+        return ConnectionProvider.builder(name)
+                .maxConnections(downstream.getMaxConnections())
+                .pendingAcquireMaxCount(downstream.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(downstream.getPendingAcquireTimeout())
+                .maxIdleTime(downstream.getMaxIdleTime())
+                .maxLifeTime(downstream.getMaxLifeTime())
+                .evictInBackground(downstream.getEvictInBackground())
+                .metrics(true)
+                .build();
+    }
+
+    private HttpClient httpClient(ConnectionProvider connectionProvider, TransportProperties.Downstream downstream) {
+        var httpClient = HttpClient.create(connectionProvider)
+                .compress(downstream.isCompression())
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) downstream.getConnectTimeout().toMillis());
+        if (downstream.isH2c()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+        return httpClient;
+    }
+
+    private HttpClient withTimeouts(HttpClient httpClient, TransportProperties.Downstream downstream) {
+        return httpClient
+                .responseTimeout(downstream.getResponseTimeout())
+                .doOnConnected(connection -> connection.addHandlerLast(
+                        new ReadTimeoutHandler(downstream.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)));
     }
 }
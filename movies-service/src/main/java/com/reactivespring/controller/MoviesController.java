@@ -1,32 +1,87 @@
 package com.reactivespring.controller;
 
-import com.reactivespring.client.MoviesInfoRestClient;
-import com.reactivespring.client.ReviewRestClient;
+import com.reactivespring.domain.CatalogEntry;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.service.BatchOrder;
+import com.reactivespring.service.CatalogService;
+import com.reactivespring.service.MoviesService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
 @RestController
 @RequestMapping("/v1/movies")
 @RequiredArgsConstructor
 public class MoviesController {
 
-    final private MoviesInfoRestClient moviesInfoRestClient;
-    final private ReviewRestClient reviewRestClient;
+    final private MoviesService moviesService;
+    final private CatalogService catalogService;
+
+    @Value("${aggregation.batchMaxIds:200}")
+    private int batchMaxIds;
+
+    @GetMapping(value = "/catalog", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<CatalogEntry> streamCatalog(@RequestParam(value = "checkpoint", required = false) String checkpoint) {
+        return Flux.defer(() -> catalogService.streamCatalog(checkpoint));
+    }
 
+    // the body is either a Movie or, in passthrough mode, the already encoded Movie JSON
     @GetMapping("/{id}")
-    public Mono<Movie> retrieveMovieById(@PathVariable("id") String movieId) {
-        return moviesInfoRestClient.retrieveMovieInfo(movieId)
-                .flatMap(movieInfo -> {
-                    var reviewsListMono = reviewRestClient.retrieveReviews(movieId)
-                            .collectList();
-
-                    return reviewsListMono.map(reviews -> new Movie(movieInfo, reviews));
-                });
+    public Mono<ResponseEntity<Object>> retrieveMovieById(@PathVariable("id") String movieId,
+                                                          ServerHttpResponse response) {
+        if (moviesService.isPassthrough()) {
+            return moviesService.retrieveMovieJsonById(movieId, response.bufferFactory())
+                    .map(json -> ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).<Object>body(json));
+        }
+        return moviesService.retrieveMovieById(movieId)
+                .map(movie -> movie.isReviewsPartial()
+                        ? ResponseEntity.ok().<Object>body(movie)
+                        : ResponseEntity.ok().eTag(eTag(movie)).<Object>body(movie));
+    }
+
+    // built from the versions of the parts, so it holds as long as neither downstream document changed
+    private static String eTag(Movie movie) {
+        var versions = Stream.concat(
+                        Stream.of(version(movie.getMovieInfo().getMovieInfoId(), movie.getMovieInfo().getVersion(), movie.getMovieInfo())),
+                        movie.getReviewList().stream().map(review -> version(review.getReviewId(), review.getVersion(), review)))
+                .collect(Collectors.joining(","));
+        return "\"" + DigestUtils.md5DigestAsHex(versions.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static String version(String id, Long version, Object value) {
+        return id + ":" + (version != null ? version : "h" + Integer.toHexString(value.hashCode()));
+    }
+
+    @GetMapping(value = "/{id}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Object> streamMovieById(@PathVariable("id") String movieId) {
+        return moviesService.streamMovieById(movieId);
+    }
+
+    @GetMapping(params = "ids", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public Flux<Movie> retrieveMoviesByIds(@RequestParam("ids") List<String> movieIds,
+                                           @RequestParam(value = "order", defaultValue = "INPUT") BatchOrder order) {
+        if (movieIds.size() > batchMaxIds) {
+            return Flux.error(new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "At most " + batchMaxIds + " ids can be requested at once"));
+        }
+        return moviesService.retrieveMoviesByIds(movieIds, order);
     }
 
 }
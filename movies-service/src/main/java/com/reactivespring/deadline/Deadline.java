@@ -0,0 +1,44 @@
+package com.reactivespring.deadline;
+
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Point in time after which nobody is waiting for the response any more. It travels in
+ * the Reactor context of the inbound request and is sent downstream as the remaining
+ * budget in the {@link #HEADER} header.
+ */
+public record Deadline(long expiresAtNanos) {
+
+    public static final String HEADER = "X-Request-Timeout-Ms";
+
+    public static Deadline after(Duration budget) {
+        return new Deadline(System.nanoTime() + budget.toNanos());
+    }
+
+    public static Optional<Deadline> from(ContextView contextView) {
+        return contextView.getOrEmpty(Deadline.class);
+    }
+
+    public Deadline earliest(Deadline other) {
+        return other.expiresAtNanos - expiresAtNanos < 0 ? other : this;
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, expiresAtNanos - System.nanoTime()));
+    }
+
+    /**
+     * The smaller of {@code budget} and what is left of the deadline once {@code reserve}
+     * has been set aside for writing the response.
+     */
+    public Duration cap(Duration budget, Duration reserve) {
+        var available = remaining().minus(reserve);
+        if (available.isNegative()) {
+            return Duration.ZERO;
+        }
+        return available.compareTo(budget) < 0 ? available : budget;
+    }
+}
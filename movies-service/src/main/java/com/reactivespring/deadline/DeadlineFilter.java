@@ -0,0 +1,79 @@
+package com.reactivespring.deadline;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sets the deadline of every inbound request, either from the caller's
+ * {@link Deadline#HEADER} or from {@code deadline.default}, and cancels the whole
+ * reactive chain, downstream calls included, once it has passed. A batch
+ * {@code GET /v1/movies?ids=} gets no default deadline as a whole, each of its ids
+ * gets {@code deadline.batchElement} instead.
+ */
+@Component
+@Slf4j
+public class DeadlineFilter implements WebFilter {
+
+    private static final PathPattern BATCH_PATH = PathPatternParser.defaultInstance.parse("/v1/movies");
+
+    private final Duration defaultBudget;
+    private final List<PathPattern> excludedPaths;
+
+    public DeadlineFilter(@Value("${deadline.default:800ms}") Duration defaultBudget,
+                          @Value("${deadline.excludedPaths:/v1/movies/catalog,/v1/movies/*/stream}") List<String> excludedPaths) {
+        this.defaultBudget = defaultBudget;
+        this.excludedPaths = excludedPaths.stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .toList();
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var budget = budget(exchange);
+        if (budget == null) {
+            return chain.filter(exchange);
+        }
+        var deadline = Deadline.after(budget);
+        return chain.filter(exchange)
+                .timeout(budget)
+                .onErrorResume(TimeoutException.class, ex -> {
+                    log.warn("Deadline of {} exceeded for {}", budget, exchange.getRequest().getPath());
+                    if (!exchange.getResponse().setStatusCode(HttpStatus.GATEWAY_TIMEOUT)) {
+                        return Mono.error(ex);
+                    }
+                    return exchange.getResponse().setComplete();
+                })
+                .contextWrite(context -> context.put(Deadline.class, deadline));
+    }
+
+    private Duration budget(ServerWebExchange exchange) {
+        var header = exchange.getRequest().getHeaders().getFirst(Deadline.HEADER);
+        if (header != null) {
+            try {
+                return Duration.ofMillis(Math.max(0, Long.parseLong(header.trim())));
+            } catch (NumberFormatException ex) {
+                log.info("Ignoring invalid {} header : {}", Deadline.HEADER, header);
+            }
+        }
+        var path = exchange.getRequest().getPath().pathWithinApplication();
+        if (excludedPaths.stream().anyMatch(pattern -> pattern.matches(path))) {
+            return null;
+        }
+        if (BATCH_PATH.matches(path) && exchange.getRequest().getQueryParams().containsKey("ids")) {
+            return null;
+        }
+        return defaultBudget;
+    }
+}
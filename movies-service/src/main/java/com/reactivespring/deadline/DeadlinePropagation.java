@@ -0,0 +1,26 @@
+package com.reactivespring.deadline;
+
+import com.reactivespring.exception.DeadlineExceededException;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+public class DeadlinePropagation {
+
+    public static ExchangeFilterFunction deadlinePropagation() {
+        return (request, next) -> Mono.deferContextual(contextView -> Deadline.from(contextView)
+                .map(deadline -> {
+                    var remaining = deadline.remaining();
+                    if (remaining.isZero()) {
+                        return Mono.<ClientResponse>error(
+                                new DeadlineExceededException("Deadline exceeded before calling " + request.url()));
+                    }
+                    var withDeadline = ClientRequest.from(request)
+                            .header(Deadline.HEADER, String.valueOf(remaining.toMillis()))
+                            .build();
+                    return next.exchange(withDeadline).timeout(remaining);
+                })
+                .orElseGet(() -> next.exchange(request)));
+    }
+}
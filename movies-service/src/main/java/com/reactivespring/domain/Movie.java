@@ -14,4 +14,9 @@ public class Movie {
 
     private MovieInfo movieInfo;
     private List<Review> reviewList;
+    private boolean reviewsPartial;
+
+    public Movie(MovieInfo movieInfo, List<Review> reviewList) {
+        this(movieInfo, reviewList, false);
+    }
 }
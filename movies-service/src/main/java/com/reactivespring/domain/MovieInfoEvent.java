@@ -0,0 +1,12 @@
+package com.reactivespring.domain;
+
+/**
+ * A MovieInfo change read from the movies-info-service change feed. A DELETE only carries
+ * the movieInfoId.
+ */
+public record MovieInfoEvent(Type type, MovieInfo movieInfo) {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+}
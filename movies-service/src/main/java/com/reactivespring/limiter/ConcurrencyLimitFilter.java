@@ -0,0 +1,115 @@
+package com.reactivespring.limiter;
+
+import com.netflix.concurrency.limits.Limiter;
+import com.netflix.concurrency.limits.limit.Gradient2Limit;
+import com.netflix.concurrency.limits.limiter.AbstractLimiter;
+import com.netflix.concurrency.limits.limiter.SimpleLimiter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Adaptive concurrency limit in front of the movies routes. The limit follows the gradient
+ * between the long term and the current request latency, so it shrinks as soon as requests
+ * start queueing, and requests above it are rejected right away with 503 and Retry-After.
+ */
+@Component
+@Slf4j
+public class ConcurrencyLimitFilter implements WebFilter, Ordered {
+
+    private static final PathPattern MOVIES_PATH = PathPatternParser.defaultInstance.parse("/v1/movies/**");
+
+    private final boolean enabled;
+    private final AbstractLimiter<Void> limiter;
+    private final Duration retryAfter;
+    private final List<PathPattern> excludedPaths;
+    private final Counter rejected;
+
+    @Autowired
+    public ConcurrencyLimitFilter(@Value("${limiter.enabled:true}") boolean enabled,
+                                  @Value("${limiter.initialLimit:50}") int initialLimit,
+                                  @Value("${limiter.minLimit:10}") int minLimit,
+                                  @Value("${limiter.maxConcurrency:1000}") int maxConcurrency,
+                                  @Value("${limiter.retryAfter:1s}") Duration retryAfter,
+                                  @Value("${limiter.excludedPaths:/v1/movies/catalog,/v1/movies/*/stream}") List<String> excludedPaths,
+                                  MeterRegistry meterRegistry) {
+        this(enabled, SimpleLimiter.newBuilder()
+                        .named("movies")
+                        .limit(Gradient2Limit.newBuilder()
+                                .initialLimit(initialLimit)
+                                .minLimit(minLimit)
+                                .maxConcurrency(maxConcurrency)
+                                .build())
+                        .build(),
+                retryAfter, excludedPaths, meterRegistry);
+    }
+
+    ConcurrencyLimitFilter(boolean enabled, AbstractLimiter<Void> limiter, Duration retryAfter,
+                           List<String> excludedPaths, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.limiter = limiter;
+        this.retryAfter = retryAfter;
+        this.excludedPaths = excludedPaths.stream()
+                .map(PathPatternParser.defaultInstance::parse)
+                .toList();
+        this.rejected = Counter.builder("movies.limiter.rejected").register(meterRegistry);
+        Gauge.builder("movies.limiter.limit", limiter, AbstractLimiter::getLimit).register(meterRegistry);
+        Gauge.builder("movies.limiter.inflight", limiter, AbstractLimiter::getInflight).register(meterRegistry);
+    }
+
+    // after the http server observation, so rejected requests still show up in http.server.requests
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 10;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        var path = exchange.getRequest().getPath().pathWithinApplication();
+        if (!enabled || !MOVIES_PATH.matches(path) || excludedPaths.stream().anyMatch(pattern -> pattern.matches(path))) {
+            return chain.filter(exchange);
+        }
+        var listener = limiter.acquire(null);
+        if (listener.isEmpty()) {
+            return reject(exchange);
+        }
+        return chain.filter(exchange)
+                .doOnSuccess(done -> complete(exchange, listener.get()))
+                .doOnError(ex -> listener.get().onIgnore())
+                .doOnCancel(() -> listener.get().onIgnore());
+    }
+
+    private void complete(ServerWebExchange exchange, Limiter.Listener listener) {
+        // a request that ran out of its deadline is a sign of overload, not a latency sample
+        if (HttpStatus.GATEWAY_TIMEOUT.equals(exchange.getResponse().getStatusCode())) {
+            listener.onDropped();
+        } else {
+            listener.onSuccess();
+        }
+    }
+
+    private Mono<Void> reject(ServerWebExchange exchange) {
+        rejected.increment();
+        log.debug("Rejecting {}, concurrency limit of {} reached", exchange.getRequest().getPath(), limiter.getLimit());
+        var response = exchange.getResponse();
+        response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, retryAfter.toSeconds())));
+        return response.setComplete();
+    }
+}
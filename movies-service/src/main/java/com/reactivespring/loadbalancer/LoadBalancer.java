@@ -0,0 +1,136 @@
+package com.reactivespring.loadbalancer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Client side load balancer over a static list of instances. Each call goes to the better
+ * of two randomly picked instances (fewest outstanding requests, then lowest average
+ * latency), and instances that keep failing with 5xx, connection errors or slow responses
+ * are ejected for a while. A call cancelled before its response, by a deadline, a lost hedge
+ * or a disconnect, only releases its slot.
+ */
+@Slf4j
+public class LoadBalancer {
+
+    private final String client;
+    private final List<ServiceInstance> instances;
+    private final int consecutiveFailures;
+    private final Duration slowCallThreshold;
+    private final Duration baseEjectionTime;
+    private final int maxEjectionPercent;
+    private final Clock clock;
+    private final Counter ejections;
+
+    public LoadBalancer(String client, List<String> instanceUrls, int consecutiveFailures, Duration slowCallThreshold,
+                        Duration baseEjectionTime, int maxEjectionPercent, MeterRegistry meterRegistry) {
+        this(client, instanceUrls, consecutiveFailures, slowCallThreshold, baseEjectionTime, maxEjectionPercent,
+                meterRegistry, Clock.systemUTC());
+    }
+
+    LoadBalancer(String client, List<String> instanceUrls, int consecutiveFailures, Duration slowCallThreshold,
+                 Duration baseEjectionTime, int maxEjectionPercent, MeterRegistry meterRegistry, Clock clock) {
+        this.client = client;
+        this.instances = instanceUrls.stream()
+                .map(url -> new ServiceInstance(client, URI.create(url), meterRegistry))
+                .toList();
+        this.consecutiveFailures = consecutiveFailures;
+        this.slowCallThreshold = slowCallThreshold;
+        this.baseEjectionTime = baseEjectionTime;
+        this.maxEjectionPercent = maxEjectionPercent;
+        this.clock = clock;
+        this.ejections = Counter.builder("movies.client.instance.ejections")
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    public List<ServiceInstance> getInstances() {
+        return instances;
+    }
+
+    /**
+     * Routes every request to a chosen instance by replacing the scheme, host and port of
+     * its URL. Without configured instances requests go to their original URL.
+     */
+    public ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> {
+            if (instances.isEmpty()) {
+                return next.exchange(request);
+            }
+            var instance = choose();
+            var url = UriComponentsBuilder.fromUri(request.url())
+                    .scheme(instance.getUri().getScheme())
+                    .host(instance.getUri().getHost())
+                    .port(instance.getUri().getPort())
+                    .build(true)
+                    .toUri();
+            var start = System.nanoTime();
+            instance.start();
+            return next.exchange(ClientRequest.from(request).url(url).build())
+                    .doOnNext(response -> record(instance, Duration.ofNanos(System.nanoTime() - start),
+                            response.statusCode().is5xxServerError()))
+                    .doOnError(ex -> record(instance, Duration.ofNanos(System.nanoTime() - start), true))
+                    // a cancel is the caller losing interest, a lost hedge or a disconnect, not the
+                    // instance failing, so it only gives the slot back. A hung instance still fails
+                    // through the connector's own response timeout
+                    .doFinally(signalType -> instance.finish());
+        };
+    }
+
+    ServiceInstance choose() {
+        var now = clock.millis();
+        var available = instances.stream()
+                .filter(instance -> !instance.isEjected(now))
+                .toList();
+        // everything ejected means the ejection is not telling healthy from unhealthy apart any more
+        var candidates = available.isEmpty() ? instances : available;
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        var random = ThreadLocalRandom.current();
+        var first = random.nextInt(candidates.size());
+        var second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        return better(candidates.get(first), candidates.get(second));
+    }
+
+    void record(ServiceInstance instance, Duration elapsed, boolean failed) {
+        var slow = elapsed.compareTo(slowCallThreshold) > 0;
+        var failures = instance.record(elapsed, failed || slow);
+        if (failures == 0) {
+            instance.resetEjections();
+        } else if (failures >= consecutiveFailures) {
+            eject(instance);
+        }
+    }
+
+    private synchronized void eject(ServiceInstance instance) {
+        var now = clock.millis();
+        var ejected = instances.stream().filter(candidate -> candidate.isEjected(now)).count();
+        if (instance.isEjected(now) || (ejected + 1) * 100 > (long) maxEjectionPercent * instances.size()) {
+            return;
+        }
+        instance.eject(now, baseEjectionTime);
+        ejections.increment();
+        log.warn("Ejected {} instance {} after {} consecutive failures", client, instance.getUri(), consecutiveFailures);
+    }
+
+    private static ServiceInstance better(ServiceInstance first, ServiceInstance second) {
+        if (first.outstanding() != second.outstanding()) {
+            return first.outstanding() < second.outstanding() ? first : second;
+        }
+        return first.averageLatency().compareTo(second.averageLatency()) <= 0 ? first : second;
+    }
+}
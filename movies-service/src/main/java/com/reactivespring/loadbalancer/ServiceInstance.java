@@ -0,0 +1,90 @@
+package com.reactivespring.loadbalancer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One statically configured downstream instance together with the live statistics the
+ * {@link LoadBalancer} selects and ejects on.
+ */
+public class ServiceInstance {
+
+    // weight of the newest sample in the latency moving average
+    private static final double LATENCY_DECAY = 0.3;
+
+    private final URI uri;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final Timer latency;
+
+    private double averageLatencyNanos;
+    private int consecutiveFailures;
+    private int ejections;
+    private long ejectedUntilMillis;
+
+    ServiceInstance(String client, URI uri, MeterRegistry meterRegistry) {
+        this.uri = uri;
+        this.latency = Timer.builder("movies.client.instance.latency")
+                .tag("client", client)
+                .tag("instance", uri.toString())
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("movies.client.instance.outstanding", outstanding, AtomicInteger::get)
+                .tag("client", client)
+                .tag("instance", uri.toString())
+                .register(meterRegistry);
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    public synchronized Duration averageLatency() {
+        return Duration.ofNanos((long) averageLatencyNanos);
+    }
+
+    public synchronized boolean isEjected(long nowMillis) {
+        return ejectedUntilMillis > nowMillis;
+    }
+
+    void start() {
+        outstanding.incrementAndGet();
+    }
+
+    void finish() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Records a completed call and returns the number of consecutive failures, which is
+     * reset by every success.
+     */
+    synchronized int record(Duration elapsed, boolean failed) {
+        latency.record(elapsed.toNanos(), TimeUnit.NANOSECONDS);
+        averageLatencyNanos = averageLatencyNanos == 0
+                ? elapsed.toNanos()
+                : LATENCY_DECAY * elapsed.toNanos() + (1 - LATENCY_DECAY) * averageLatencyNanos;
+        consecutiveFailures = failed ? consecutiveFailures + 1 : 0;
+        return consecutiveFailures;
+    }
+
+    // every further ejection of the same instance lasts longer, up to ten times the base time
+    synchronized void eject(long nowMillis, Duration baseEjectionTime) {
+        ejections = Math.min(ejections + 1, 10);
+        ejectedUntilMillis = nowMillis + baseEjectionTime.toMillis() * ejections;
+        consecutiveFailures = 0;
+    }
+
+    synchronized void resetEjections() {
+        ejections = 0;
+    }
+}
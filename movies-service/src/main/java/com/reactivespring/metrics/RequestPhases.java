@@ -0,0 +1,52 @@
+package com.reactivespring.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Times the phases of an aggregate request (movie info lookup, reviews lookup, response
+ * encoding) in the {@code movies.request.phase} timer, tagged with phase and outcome.
+ */
+@Component
+@RequiredArgsConstructor
+public class RequestPhases {
+
+    public static final String MOVIE_INFO = "movieInfo";
+    public static final String REVIEWS = "reviews";
+    public static final String ENCODE = "encode";
+
+    final private MeterRegistry meterRegistry;
+
+    public <T> Mono<T> time(String phase, Mono<T> mono) {
+        return Mono.defer(() -> {
+            var start = System.nanoTime();
+            var emitted = new AtomicBoolean();
+            return mono
+                    .doOnNext(value -> emitted.set(true))
+                    .doFinally(signalType -> record(phase, outcome(signalType, emitted.get()), System.nanoTime() - start));
+        });
+    }
+
+    public void record(String phase, String outcome, long elapsedNanos) {
+        Timer.builder("movies.request.phase")
+                .tag("phase", phase)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String outcome(SignalType signalType, boolean emitted) {
+        return switch (signalType) {
+            case ON_ERROR -> "error";
+            case CANCEL -> "cancelled";
+            default -> emitted ? "success" : "empty";
+        };
+    }
+}
@@ -0,0 +1,38 @@
+package com.reactivespring.metrics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.util.MimeType;
+
+import java.util.Map;
+
+/**
+ * Jackson JSON encoder that records the time spent serializing single value responses, such
+ * as the {@code Movie} aggregate, as the {@link RequestPhases#ENCODE} phase.
+ */
+public class TimedJackson2JsonEncoder extends Jackson2JsonEncoder {
+
+    private final RequestPhases requestPhases;
+
+    public TimedJackson2JsonEncoder(ObjectMapper objectMapper, RequestPhases requestPhases) {
+        super(objectMapper);
+        this.requestPhases = requestPhases;
+    }
+
+    @Override
+    public DataBuffer encodeValue(Object value, DataBufferFactory bufferFactory, ResolvableType valueType,
+                                  MimeType mimeType, Map<String, Object> hints) {
+        var start = System.nanoTime();
+        var outcome = "error";
+        try {
+            var dataBuffer = super.encodeValue(value, bufferFactory, valueType, mimeType, hints);
+            outcome = "success";
+            return dataBuffer;
+        } finally {
+            requestPhases.record(RequestPhases.ENCODE, outcome, System.nanoTime() - start);
+        }
+    }
+}
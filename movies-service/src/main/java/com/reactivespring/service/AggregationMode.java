@@ -0,0 +1,11 @@
+package com.reactivespring.service;
+
+public enum AggregationMode {
+    SEQUENTIAL,
+    CONCURRENT,
+    /**
+     * Like {@link #CONCURRENT}, but single movie responses are spliced together from the
+     * downstream JSON bytes instead of being decoded and re-encoded.
+     */
+    PASSTHROUGH
+}
@@ -0,0 +1,6 @@
+package com.reactivespring.service;
+
+public enum BatchOrder {
+    INPUT,
+    COMPLETION
+}
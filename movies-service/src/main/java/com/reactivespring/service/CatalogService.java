@@ -0,0 +1,97 @@
+package com.reactivespring.service;
+
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewRestClient;
+import com.reactivespring.domain.CatalogEntry;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Joins every MovieInfo with its reviews for bulk exports. Keyset pages are fetched one at a
+ * time in movieInfoId order and only when downstream demand reaches them, so memory stays
+ * bounded by the page size and the join concurrency whatever the catalog size. A checkpoint
+ * is the cursor of an entry's page plus its position on that page.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CatalogService {
+
+    final private MoviesInfoRestClient moviesInfoRestClient;
+    final private ReviewRestClient reviewRestClient;
+
+    @Value("${catalog.pageSize:100}")
+    private int pageSize;
+
+    @Value("${catalog.concurrency:8}")
+    private int concurrency;
+
+    public Flux<CatalogEntry> streamCatalog(String checkpoint) {
+        var resumeAfter = checkpoint == null ? new PagePosition(null, -1) : decodeCheckpoint(checkpoint);
+        return pages(resumeAfter.pageCursor())
+                .concatMapIterable(page -> IntStream.range(0, page.movieInfos().size())
+                        .mapToObj(index -> new PagedMovieInfo(new PagePosition(page.cursor(), index), page.movieInfos().get(index)))
+                        .toList(), 1)
+                .skip(resumeAfter.index() + 1)
+                .flatMapSequential(paged -> join(paged.movieInfo())
+                        .map(movie -> new CatalogEntry(encodeCheckpoint(paged.position()), movie)), concurrency, 1);
+    }
+
+    private Flux<Page> pages(String cursor) {
+        return moviesInfoRestClient.retrieveMovieInfoPage(cursor, pageSize)
+                .flatMapMany(page -> {
+                    var fetched = Flux.just(new Page(cursor, page.movieInfos()));
+                    if (page.nextCursor() == null) {
+                        return fetched;
+                    }
+                    return fetched.concatWith(Flux.defer(() -> pages(page.nextCursor())));
+                });
+    }
+
+    private Mono<Movie> join(MovieInfo movieInfo) {
+        return reviewRestClient.retrieveReviews(movieInfo.getMovieInfoId())
+                .collectList()
+                .map(reviews -> new Movie(movieInfo, reviews));
+    }
+
+    private String encodeCheckpoint(PagePosition position) {
+        var checkpoint = position.index() + ":" + (position.pageCursor() == null ? "" : position.pageCursor());
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(checkpoint.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private PagePosition decodeCheckpoint(String checkpoint) {
+        try {
+            var decoded = new String(Base64.getUrlDecoder().decode(checkpoint), StandardCharsets.UTF_8);
+            var separator = decoded.indexOf(':');
+            var pageCursor = decoded.substring(separator + 1);
+            return new PagePosition(pageCursor.isEmpty() ? null : pageCursor,
+                    Integer.parseInt(decoded.substring(0, separator)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException ex) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid checkpoint : " + checkpoint);
+        }
+    }
+
+    // cursor is the one the page was fetched with, null for the first page
+    private record Page(String cursor, List<MovieInfo> movieInfos) {
+    }
+
+    private record PagePosition(String pageCursor, int index) {
+    }
+
+    private record PagedMovieInfo(PagePosition position, MovieInfo movieInfo) {
+    }
+}
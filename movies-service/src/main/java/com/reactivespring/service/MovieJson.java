@@ -0,0 +1,31 @@
+package com.reactivespring.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Writes the {@link com.reactivespring.domain.Movie} JSON envelope around the raw downstream
+ * bodies. Each body has already been aggregated into one byte array by the client, which is the
+ * one copy single flight needs to hand the same body to every coalesced caller. From there the
+ * pieces are wrapped and joined, so nothing is copied again and nothing is decoded or re-encoded.
+ */
+public class MovieJson {
+
+    private static final byte[] MOVIE_INFO = "{\"movieInfo\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REVIEW_LIST = ",\"reviewList\":".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REVIEWS_COMPLETE = ",\"reviewsPartial\":false}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] REVIEWS_PARTIAL = ",\"reviewsPartial\":true}".getBytes(StandardCharsets.UTF_8);
+
+    public static DataBuffer envelope(DataBufferFactory bufferFactory, byte[] movieInfo, byte[] reviewList,
+                                      boolean reviewsPartial) {
+        return bufferFactory.join(List.of(
+                bufferFactory.wrap(MOVIE_INFO),
+                bufferFactory.wrap(movieInfo),
+                bufferFactory.wrap(REVIEW_LIST),
+                bufferFactory.wrap(reviewList),
+                bufferFactory.wrap(reviewsPartial ? REVIEWS_PARTIAL : REVIEWS_COMPLETE)));
+    }
+}
@@ -0,0 +1,155 @@
+package com.reactivespring.service;
+
+import com.reactivespring.cache.MovieCache;
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.client.ReviewRestClient;
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.Review;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.metrics.RequestPhases;
+import com.reactivespring.util.JsonBytes;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MoviesService {
+
+    final private MoviesInfoRestClient moviesInfoRestClient;
+    final private ReviewRestClient reviewRestClient;
+    final private MovieCache movieCache;
+    final private RequestPhases requestPhases;
+
+    @Value("${aggregation.mode:CONCURRENT}")
+    private AggregationMode aggregationMode;
+
+    @Value("${aggregation.movieInfoTimeout:5s}")
+    private Duration movieInfoTimeout;
+
+    @Value("${aggregation.reviewsTimeout:3s}")
+    private Duration reviewsTimeout;
+
+    @Value("${deadline.responseReserve:50ms}")
+    private Duration responseReserve;
+
+    @Value("${deadline.batchElement:800ms}")
+    private Duration batchElementBudget;
+
+    @Value("${aggregation.batchConcurrency:8}")
+    private int batchConcurrency;
+
+    @Value("${aggregation.streamPrefetch:32}")
+    private int streamPrefetch;
+
+    public Mono<Movie> retrieveMovieById(String movieId) {
+        if (aggregationMode == AggregationMode.SEQUENTIAL) {
+            return retrieveMovieInfo(movieId)
+                    .flatMap(movieInfo -> retrieveReviews(movieId)
+                            .map(reviews -> toMovie(movieInfo, reviews)));
+        }
+        // the reviews call only needs the path id, so both calls are subscribed at once
+        return Mono.zip(retrieveMovieInfo(movieId), retrieveReviews(movieId), this::toMovie);
+    }
+
+    public boolean isPassthrough() {
+        return aggregationMode == AggregationMode.PASSTHROUGH;
+    }
+
+    public Mono<DataBuffer> retrieveMovieJsonById(String movieId, DataBufferFactory bufferFactory) {
+        var movieInfo = requestPhases.time(RequestPhases.MOVIE_INFO, Mono.deferContextual(contextView ->
+                moviesInfoRestClient.retrieveMovieInfoJson(movieId).timeout(budget(contextView, movieInfoTimeout))));
+        var reviews = requestPhases.time(RequestPhases.REVIEWS, Mono.deferContextual(contextView ->
+                        reviewRestClient.retrieveReviewsJson(movieId).timeout(budget(contextView, reviewsTimeout))))
+                .map(json -> new ReviewsJson(json, false))
+                .onErrorResume(TimeoutException.class, ex -> {
+                    log.warn("Reviews for movie {} missed their budget, returning a partial response", movieId);
+                    return Mono.just(new ReviewsJson(JsonBytes.EMPTY_ARRAY, true));
+                });
+        return Mono.zip(movieInfo, reviews, (movieInfoJson, reviewsJson) ->
+                MovieJson.envelope(bufferFactory, movieInfoJson, reviewsJson.json(), reviewsJson.partial()));
+    }
+
+    public Flux<Object> streamMovieById(String movieId) {
+        // both calls start at once, reviews are held in a bounded prefetch until the MovieInfo is out
+        return Flux.<Object>mergeSequential(streamPrefetch,
+                retrieveMovieInfo(movieId),
+                reviewRestClient.streamReviews(movieId));
+    }
+
+    public Flux<Movie> retrieveMoviesByIds(List<String> movieIds, BatchOrder order) {
+        var distinctIds = Flux.fromIterable(movieIds).distinct();
+        if (order == BatchOrder.COMPLETION) {
+            return distinctIds.flatMap(this::retrieveBatchElement, batchConcurrency);
+        }
+        return distinctIds.flatMapSequential(this::retrieveBatchElement, batchConcurrency);
+    }
+
+    // every id gets its own deadline once it has a concurrency slot, one that misses it is left out like a missing one
+    private Mono<Movie> retrieveBatchElement(String movieId) {
+        return retrieveMovieById(movieId)
+                .onErrorResume(MoviesInfoClientException.class, ex -> {
+                    if (ex.getStatusCode() == HttpStatus.NOT_FOUND.value()) {
+                        log.info("Skipping movie {} in batch : {}", movieId, ex.getMessage());
+                        return Mono.empty();
+                    }
+                    return Mono.error(ex);
+                })
+                .onErrorResume(TimeoutException.class, ex -> {
+                    log.warn("Skipping movie {} in batch, it missed its budget of {}", movieId, batchElementBudget);
+                    return Mono.empty();
+                })
+                .contextWrite(context -> {
+                    var deadline = Deadline.after(batchElementBudget);
+                    return context.put(Deadline.class, Deadline.from(context)
+                            .map(inbound -> inbound.earliest(deadline))
+                            .orElse(deadline));
+                });
+    }
+
+    private Mono<MovieInfo> retrieveMovieInfo(String movieId) {
+        return requestPhases.time(RequestPhases.MOVIE_INFO, movieCache.movieInfo(movieId, eTag -> Mono.deferContextual(contextView ->
+                moviesInfoRestClient.retrieveMovieInfo(movieId, eTag).timeout(budget(contextView, movieInfoTimeout)))));
+    }
+
+    private Mono<ReviewList> retrieveReviews(String movieId) {
+        return requestPhases.time(RequestPhases.REVIEWS, movieCache.reviews(movieId, eTag -> Mono.deferContextual(contextView ->
+                        reviewRestClient.retrieveReviews(movieId, eTag).timeout(budget(contextView, reviewsTimeout)))))
+                .map(reviews -> new ReviewList(reviews, false))
+                .onErrorResume(TimeoutException.class, ex -> {
+                    log.warn("Reviews for movie {} missed their budget, returning a partial response", movieId);
+                    return Mono.just(new ReviewList(List.of(), true));
+                });
+    }
+
+    // a caller's deadline shortens the configured budgets, keeping enough back to still answer in time
+    private Duration budget(ContextView contextView, Duration configured) {
+        return Deadline.from(contextView)
+                .map(deadline -> deadline.cap(configured, responseReserve))
+                .orElse(configured);
+    }
+
+    private Movie toMovie(MovieInfo movieInfo, ReviewList reviewList) {
+        return new Movie(movieInfo, reviewList.reviews(), reviewList.partial());
+    }
+
+    private record ReviewList(List<Review> reviews, boolean partial) {
+    }
+
+    private record ReviewsJson(byte[] json, boolean partial) {
+    }
+}
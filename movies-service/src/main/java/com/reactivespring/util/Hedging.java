@@ -0,0 +1,85 @@
+package com.reactivespring.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Sends a second, hedged attempt when the first one has not answered within the
+ * configured percentile of recently observed latencies. The first value wins and the
+ * other attempt is cancelled. The first attempt's error is passed on as soon as it
+ * arrives, so an error is never hedged, while a failed hedge only loses.
+ */
+public class Hedging {
+
+    private static final int RECOMPUTE_EVERY = 64;
+
+    private final boolean enabled;
+    private final double percentile;
+    private final Duration minDelay;
+    private final long[] samples;
+    private final Counter hedgedCounter;
+
+    private int sampleCount;
+    private int nextSample;
+    private volatile Duration delay;
+
+    public Hedging(String client, boolean enabled, double percentile, Duration minDelay, int sampleSize,
+                   MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.samples = new long[sampleSize];
+        this.delay = minDelay;
+        this.hedgedCounter = Counter.builder("movies.client.hedged")
+                .description("Hedged attempts sent because the first attempt was slow")
+                .tag("client", client)
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> hedge(Supplier<Mono<T>> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        return Mono.defer(() -> {
+            // whatever the first attempt signals ends the race, the delay included, the hedge
+            // only ever signals a value
+            var hedged = Mono.delay(delay)
+                    .flatMap(tick -> {
+                        hedgedCounter.increment();
+                        return timed(call);
+                    })
+                    .onErrorResume(ex -> Mono.never())
+                    .switchIfEmpty(Mono.never());
+            return Mono.firstWithSignal(timed(call), hedged);
+        });
+    }
+
+    public Duration currentDelay() {
+        return delay;
+    }
+
+    private <T> Mono<T> timed(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            var start = System.nanoTime();
+            return call.get().doOnSuccess(value -> record(System.nanoTime() - start));
+        });
+    }
+
+    private synchronized void record(long latencyNanos) {
+        samples[nextSample] = latencyNanos;
+        nextSample = (nextSample + 1) % samples.length;
+        sampleCount = Math.min(sampleCount + 1, samples.length);
+        if (nextSample % RECOMPUTE_EVERY == 0) {
+            var sorted = Arrays.copyOf(samples, sampleCount);
+            Arrays.sort(sorted);
+            var index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+            var observed = Duration.ofNanos(sorted[Math.max(0, index)]);
+            delay = observed.compareTo(minDelay) > 0 ? observed : minDelay;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.reactivespring.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Minimal checks on JSON bodies that are passed through as bytes instead of being decoded.
+ */
+public class JsonBytes {
+
+    public static final byte[] EMPTY_ARRAY = "[]".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * Whether the body, ignoring surrounding whitespace, opens with {@code open} and closes
+     * with {@code close}. Catches empty, truncated and non-JSON bodies without parsing them.
+     */
+    public static boolean isEnclosed(byte[] json, char open, char close) {
+        int start = 0;
+        int end = json.length - 1;
+        while (start <= end && Character.isWhitespace(json[start])) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(json[end])) {
+            end--;
+        }
+        return end > start && json[start] == open && json[end] == close;
+    }
+}
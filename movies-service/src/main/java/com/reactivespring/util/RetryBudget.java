@@ -0,0 +1,51 @@
+package com.reactivespring.util;
+
+/**
+ * Token bucket shared by all downstream clients. Every first attempt deposits
+ * {@code retryRatio} tokens and every retry withdraws one, so retries stay a fixed share
+ * of traffic. {@code minRetriesPerSecond} are granted on top so that low traffic can
+ * still retry.
+ */
+public class RetryBudget {
+
+    private final double retryRatio;
+    private final double minRetriesPerSecond;
+    private final double maxBalance;
+
+    private double balance;
+    private long lastRefillNanos;
+
+    public RetryBudget(double retryRatio, double minRetriesPerSecond, double maxBalance) {
+        this.retryRatio = retryRatio;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+        this.maxBalance = maxBalance;
+        this.balance = maxBalance;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    public synchronized void recordRequest() {
+        refill();
+        balance = Math.min(maxBalance, balance + retryRatio);
+    }
+
+    public synchronized boolean canRetry() {
+        refill();
+        return balance >= 1;
+    }
+
+    public synchronized void recordRetry() {
+        balance = Math.max(0, balance - 1);
+    }
+
+    public synchronized double balance() {
+        refill();
+        return balance;
+    }
+
+    private void refill() {
+        var now = System.nanoTime();
+        var elapsedSeconds = (now - lastRefillNanos) / 1_000_000_000d;
+        lastRefillNanos = now;
+        balance = Math.min(maxBalance, balance + elapsedSeconds * minRetriesPerSecond);
+    }
+}
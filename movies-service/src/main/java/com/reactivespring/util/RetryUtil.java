@@ -1,20 +1,80 @@
 package com.reactivespring.util;
 
+import com.reactivespring.deadline.Deadline;
 import com.reactivespring.exception.MoviesInfoServerException;
 import com.reactivespring.exception.ReviewsServerException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
 import reactor.util.retry.Retry;
 
 import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class RetryUtil {
 
-    public static Retry retrySpec() {
+    public static Retry retrySpec(String client, long maxAttempts, Duration minBackoff, Duration maxBackoff,
+                                  double jitter, RetryBudget retryBudget, MeterRegistry meterRegistry) {
 
-        return Retry.fixedDelay(2, Duration.ofSeconds(1))
-                .filter(ex -> ex instanceof MoviesInfoServerException ||
-                        ex instanceof ReviewsServerException)
+        var retries = Counter.builder("movies.client.retries")
+                .tag("client", client)
+                .register(meterRegistry);
+        var budgetExhausted = Counter.builder("movies.client.retries.budget.exhausted")
+                .tag("client", client)
+                .register(meterRegistry);
+        var retryWait = Timer.builder("movies.client.retries.wait")
+                .tag("client", client)
+                .register(meterRegistry);
+
+        var backoff = Retry.backoff(maxAttempts, minBackoff)
+                .maxBackoff(maxBackoff)
+                .jitter(jitter)
+                .filter(ex -> {
+                    if (!isRetryable(ex)) {
+                        return false;
+                    }
+                    if (!retryBudget.canRetry()) {
+                        budgetExhausted.increment();
+                        return false;
+                    }
+                    return true;
+                })
+                .doBeforeRetry(retrySignal -> {
+                    retryBudget.recordRetry();
+                    retries.increment();
+                })
                 .onRetryExhaustedThrow((retryBackoffSpec, retrySignal) ->
                         Exceptions.propagate(retrySignal.failure()));
+        return withinDeadline(backoff, minBackoff, retryWait);
+    }
+
+    /**
+     * Gives up retrying, with the last failure, once the deadline in the subscriber context
+     * leaves less than {@code minBackoff}: the next attempt could not finish in time anyway.
+     * The backoff between a failure and its retry is recorded in {@code retryWait}.
+     */
+    static Retry withinDeadline(Retry retry, Duration minBackoff, Timer retryWait) {
+        return Retry.from(retrySignals -> Flux.deferContextual(contextView -> {
+            var deadline = Deadline.from(contextView);
+            var failedAt = new AtomicLong();
+            var withinDeadline = retrySignals.map(retrySignal -> {
+                if (deadline.isPresent() && deadline.get().remaining().compareTo(minBackoff) < 0) {
+                    throw Exceptions.propagate(retrySignal.failure());
+                }
+                failedAt.set(System.nanoTime());
+                return retrySignal;
+            });
+            return Flux.from(retry.generateCompanion(withinDeadline))
+                    .doOnNext(trigger -> retryWait.record(System.nanoTime() - failedAt.get(), TimeUnit.NANOSECONDS))
+                    .cast(Object.class);
+        }));
+    }
+
+    private static boolean isRetryable(Throwable ex) {
+        return ex instanceof MoviesInfoServerException ||
+                ex instanceof ReviewsServerException;
     }
 }
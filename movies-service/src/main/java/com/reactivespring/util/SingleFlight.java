@@ -0,0 +1,87 @@
+package com.reactivespring.util;
+
+import com.reactivespring.deadline.Deadline;
+import com.reactivespring.exception.DeadlineExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Lets concurrent callers asking for the same key share one in-flight downstream call.
+ * The entry is dropped as soon as the shared call completes, fails or is cancelled by
+ * all of its subscribers, so only calls that overlap in time are coalesced. The shared call
+ * runs with the {@link Deadline} of the caller that started it, so a caller only joins a call
+ * whose deadline is no earlier than its own and otherwise starts the one later callers join.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight<V>> inFlight = new ConcurrentHashMap<>();
+    private final Counter executedCounter;
+    private final Counter coalescedCounter;
+
+    public SingleFlight(String name, MeterRegistry meterRegistry) {
+        this.executedCounter = Counter.builder("movies.client.singleflight.executed")
+                .description("Downstream calls actually executed")
+                .tag("client", name)
+                .register(meterRegistry);
+        this.coalescedCounter = Counter.builder("movies.client.singleflight.coalesced")
+                .description("Calls that joined an already in-flight downstream call")
+                .tag("client", name)
+                .register(meterRegistry);
+    }
+
+    public Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.deferContextual(contextView -> {
+            var deadline = Deadline.from(contextView).orElse(null);
+            var leader = new AtomicBoolean();
+            var flight = inFlight.compute(key, (k, current) -> {
+                if (current != null && current.outlasts(deadline)) {
+                    return current;
+                }
+                leader.set(true);
+                return share(k, call, deadline);
+            });
+            (leader.get() ? executedCounter : coalescedCounter).increment();
+            if (deadline == null) {
+                return flight.shared();
+            }
+            var remaining = deadline.remaining();
+            return remaining.isZero()
+                    ? Mono.error(new DeadlineExceededException("Deadline exceeded before calling downstream"))
+                    : flight.shared().timeout(remaining);
+        });
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private Flight<V> share(K key, Supplier<Mono<V>> call, Deadline deadline) {
+        var self = new AtomicReference<Flight<V>>();
+        var shared = call.get()
+                .doFinally(signalType -> inFlight.remove(key, self.get()))
+                .flux()
+                .publish()
+                .refCount()
+                .singleOrEmpty();
+        self.set(new Flight<>(shared, deadline));
+        return self.get();
+    }
+
+    // a null deadline is no deadline at all
+    private record Flight<V>(Mono<V> shared, Deadline deadline) {
+
+        boolean outlasts(Deadline callerDeadline) {
+            if (deadline == null) {
+                return true;
+            }
+            return callerDeadline != null && deadline.expiresAtNanos() - callerDeadline.expiresAtNanos() >= 0;
+        }
+    }
+}
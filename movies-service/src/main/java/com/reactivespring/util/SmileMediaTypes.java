@@ -0,0 +1,26 @@
+package com.reactivespring.util;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Media types of the binary Smile encoding of JSON, which WebFlux encodes and decodes
+ * out of the box once jackson-dataformat-smile is on the classpath. Single values use
+ * {@link #APPLICATION_SMILE}; anything decoded as a Flux, JSON arrays included, has to use
+ * {@link #APPLICATION_STREAM_SMILE}, as Smile has no array framing across encoded values.
+ */
+public class SmileMediaTypes {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+    public static final MediaType APPLICATION_STREAM_SMILE = new MediaType("application", "stream+x-jackson-smile");
+
+    /**
+     * The Accept media types for a call: {@code binary} first when {@code binaryCodec} is on,
+     * with {@code textual} kept as a fallback for backends that cannot produce Smile.
+     */
+    public static MediaType[] acceptable(boolean binaryCodec, MediaType binary, MediaType textual) {
+        if (!binaryCodec) {
+            return new MediaType[]{textual};
+        }
+        return new MediaType[]{binary, textual};
+    }
+}
@@ -1,30 +1,56 @@
 package com.reactivespring.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.github.tomakehurst.wiremock.client.WireMock;
 import com.github.tomakehurst.wiremock.matching.RequestPatternBuilder;
+import com.reactivespring.client.MoviesInfoRestClient;
+import com.reactivespring.domain.CatalogEntry;
 import com.reactivespring.domain.Movie;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.Review;
+import com.reactivespring.service.AggregationMode;
+import com.reactivespring.service.MoviesService;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.test.StepVerifier;
 
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Objects;
+import java.util.stream.IntStream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 
 @SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
 @ActiveProfiles("test")
 @AutoConfigureWebTestClient
 @AutoConfigureWireMock(port=8084)
+@AutoConfigureObservability
 @TestPropertySource(
         properties = {
                 "restClient.moviesInfoUrl=http://localhost:8084/v1/movieinfos",
-                "restClient.reviewsUrl=http://localhost:8084/v1/reviews"
+                "restClient.reviewsUrl=http://localhost:8084/v1/reviews",
+                "movieInfoCache.enabled=false",
+                "movieCache.enabled=false",
+                "catalog.pageSize=2",
+                "deadline.default=1s",
+                "deadline.batchElement=800ms"
         }
 )
 public class MoviesControllerIntegrationTest {
@@ -32,6 +58,20 @@ public class MoviesControllerIntegrationTest {
     @Autowired
     WebTestClient webTestClient;
 
+    @Autowired
+    CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    MoviesService moviesService;
+
+    @Autowired
+    MoviesInfoRestClient moviesInfoRestClient;
+
+    @BeforeEach
+    void setUp() {
+        WireMock.reset();
+    }
+
     @Test
     void retrieveMovieId() {
 
@@ -60,6 +100,290 @@ public class MoviesControllerIntegrationTest {
                 );
     }
 
+    @Test
+    void retrieveMovieId_notModified() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withHeader("ETag", "\"v1\"")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
+        var eTag = webTestClient.get()
+                .uri("/v1/movies/{id}","1")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(Movie.class)
+                .getResponseHeaders().getETag();
+        assertNotNull(eTag);
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}","1")
+                .ifNoneMatch(eTag)
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    void retrieveMovieId_latencyBreakdown() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}","1")
+                .exchange()
+                .expectStatus().isOk();
+
+        webTestClient.get()
+                .uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(scrape -> {
+                    assert scrape.contains("movies_request_phase_seconds_bucket{outcome=\"success\",phase=\"movieInfo\"");
+                    assert scrape.contains("movies_request_phase_seconds_bucket{outcome=\"success\",phase=\"reviews\"");
+                    assert scrape.contains("movies_request_phase_seconds_count{outcome=\"success\",phase=\"encode\"");
+                    assert scrape.contains("http_server_requests_seconds_bucket{error=\"none\",exception=\"none\",method=\"GET\",outcome=\"SUCCESS\",status=\"200\",uri=\"/v1/movies/{id}\"");
+                });
+    }
+
+    @Test
+    void retrieveMovieId_smile() throws Exception {
+
+        var smileMapper = new ObjectMapper(new SmileFactory()).registerModule(new JavaTimeModule());
+        var movieInfo = new MovieInfo("1", "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+        var reviews = new ByteArrayOutputStream();
+        reviews.write(smileMapper.writeValueAsBytes(new Review("1", 1L, "Awesome Movie", 9.0)));
+        reviews.write(smileMapper.writeValueAsBytes(new Review("2", 1L, "Excellent Movie", 8.0)));
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .withHeader("Accept", containing("application/x-jackson-smile"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/x-jackson-smile")
+                        .withBody(smileMapper.writeValueAsBytes(movieInfo))));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .withHeader("Accept", containing("application/stream+x-jackson-smile"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/stream+x-jackson-smile")
+                        .withBody(reviews.toByteArray())));
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}","1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentType("application/json")
+                .expectBody(Movie.class)
+                .consumeWith(
+                        movieEntityExchangeResult -> {
+                            var movie = movieEntityExchangeResult.getResponseBody();
+                            assert Objects.requireNonNull(movie).getReviewList().size()==2;
+                            assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                        }
+                );
+    }
+
+    @Test
+    void retrieveMovieId_passthrough() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
+        ReflectionTestUtils.setField(moviesService, "aggregationMode", AggregationMode.PASSTHROUGH);
+        try {
+            webTestClient.get()
+                    .uri("/v1/movies/{id}","1")
+                    .exchange()
+                    .expectStatus().isOk()
+                    .expectHeader().contentType("application/json")
+                    .expectBody(Movie.class)
+                    .consumeWith(
+                            movieEntityExchangeResult -> {
+                                var movie = movieEntityExchangeResult.getResponseBody();
+                                assert Objects.requireNonNull(movie).getReviewList().size()==2;
+                                assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                            }
+                    );
+        } finally {
+            ReflectionTestUtils.setField(moviesService, "aggregationMode", AggregationMode.CONCURRENT);
+        }
+    }
+
+    @Test
+    void streamMovieById() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
+        var lines = webTestClient.get()
+                .uri("/v1/movies/{id}/stream","1")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(3, Objects.requireNonNull(lines).size());
+        assert lines.get(0).contains("Batman Begins");
+        assert lines.get(1).contains("Excellent Movie");
+    }
+
+    @Test
+    void streamCatalog() {
+
+        stubFor(get(urlPathEqualTo("/v1/movieinfos"))
+                .withQueryParam("limit", equalTo("2"))
+                .withQueryParam("after", absent())
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withHeader("X-Next-Cursor", "page2")
+                        .withBody("""
+                                [{"movieInfoId":"1","name":"Batman Begins","year":2005,"cast":["Christian Bale"]},
+                                 {"movieInfoId":"2","name":"The Dark Knight","year":2008,"cast":["Christian Bale"]}]""")));
+
+        stubFor(get(urlPathEqualTo("/v1/movieinfos"))
+                .withQueryParam("limit", equalTo("2"))
+                .withQueryParam("after", equalTo("page2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBody("""
+                                [{"movieInfoId":"3","name":"Dark Knight Rises","year":2012,"cast":["Christian Bale"]}]""")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
+        var entries = webTestClient.get()
+                .uri("/v1/movies/catalog")
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(CatalogEntry.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(3, Objects.requireNonNull(entries).size());
+        assertEquals("Dark Knight Rises", entries.get(2).getMovie().getMovieInfo().getName());
+
+        var resumed = webTestClient.get()
+                .uri("/v1/movies/catalog?checkpoint={checkpoint}", entries.get(1).getCheckpoint())
+                .exchange()
+                .expectStatus().isOk()
+                .returnResult(CatalogEntry.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertEquals(1, Objects.requireNonNull(resumed).size());
+        assertEquals("Dark Knight Rises", resumed.get(0).getMovie().getMovieInfo().getName());
+    }
+
+    @Test
+    void streamCatalog_rejectedPageIsNotRetried() {
+
+        stubFor(get(urlPathEqualTo("/v1/movieinfos"))
+                .willReturn(aResponse()
+                        .withStatus(400)
+                        .withBody("Unsupported cursor")));
+
+        webTestClient.get()
+                .uri("/v1/movies/catalog")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("Unsupported cursor");
+
+        WireMock.verify(1, getRequestedFor(urlPathEqualTo("/v1/movieinfos")));
+    }
+
+    @Test
+    void retrieveMovieInfoStream_typedEvents() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/stream"))
+                .withHeader("Accept", containing("text/event-stream"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","text/event-stream")
+                        .withBody("""
+                                id:1
+                                event:update
+                                data:{"movieInfoId":"1","name":"Batman Begins Remastered","year":2005}
+
+                                id:2
+                                event:delete
+                                data:{"movieInfoId":"1"}
+
+                                """)));
+
+        StepVerifier.create(moviesInfoRestClient.retrieveMovieInfoStream())
+                .assertNext(event -> {
+                    assertEquals(MovieInfoEvent.Type.UPDATE, event.type());
+                    assertEquals("Batman Begins Remastered", event.movieInfo().getName());
+                })
+                .assertNext(event -> {
+                    assertEquals(MovieInfoEvent.Type.DELETE, event.type());
+                    assertEquals("1", event.movieInfo().getMovieInfoId());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void retrieveMoviesByIds() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/2"))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies?ids={ids}","1,2,1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .hasSize(1)
+                .value(movies -> assertEquals("Batman Begins", movies.get(0).getMovieInfo().getName()));
+
+        WireMock.verify(1, getRequestedFor(urlEqualTo("/v1/movieinfos/id/1")));
+    }
+
     @Test
     void retrieveMovieId_404_NotFound() {
 
@@ -110,6 +434,141 @@ public class MoviesControllerIntegrationTest {
                 );
     }
 
+    @Test
+    void retrieveMovieId_reviews_slow_partial() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")
+                        .withFixedDelay(5000)));
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}","1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(
+                        movieEntityExchangeResult -> {
+                            var movie = movieEntityExchangeResult.getResponseBody();
+                            assert Objects.requireNonNull(movie).getReviewList().isEmpty();
+                            assert movie.isReviewsPartial();
+                            assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                        }
+                );
+    }
+
+    @Test
+    void retrieveMovieId_deadline_propagated() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")
+                        .withFixedDelay(5000)));
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}","1")
+                .header("X-Request-Timeout-Ms", "500")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Movie.class)
+                .consumeWith(
+                        movieEntityExchangeResult -> {
+                            var movie = movieEntityExchangeResult.getResponseBody();
+                            assert Objects.requireNonNull(movie).isReviewsPartial();
+                            assertEquals("Batman Begins", movie.getMovieInfo().getName());
+                        }
+                );
+
+        WireMock.verify(getRequestedFor(urlEqualTo("/v1/movieinfos/id/1"))
+                .withHeader("X-Request-Timeout-Ms", matching("[1-4]?[0-9]{1,2}|500")));
+    }
+
+    @Test
+    void retrieveMovieId_deadline_exceeded() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(2000)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies/{id}","1")
+                .header("X-Request-Timeout-Ms", "300")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(504);
+    }
+
+    // 20 ids at a concurrency of 8 take three rounds of 400ms, more than the 1s default budget but well inside each id's own
+    @Test
+    void retrieveMoviesByIds_largerThanConcurrency_eachIdHasItsOwnDeadline() {
+
+        stubFor(get(urlPathMatching("/v1/movieinfos/id/.*"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(400)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
+        var ids = String.join(",", IntStream.rangeClosed(1, 20).mapToObj(String::valueOf).toList());
+
+        webTestClient.get()
+                .uri("/v1/movies?ids={ids}", ids)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .hasSize(20);
+    }
+
+    @Test
+    void retrieveMoviesByIds_slowId_skipped() {
+
+        stubFor(get(urlPathMatching("/v1/movieinfos/id/.*"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/2"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")
+                        .withFixedDelay(2000)));
+
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
+        webTestClient.get()
+                .uri("/v1/movies?ids={ids}", "1,2,3")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Movie.class)
+                .hasSize(2);
+    }
+
     @Test
     void retrieveMovieId_500_InternalError() {
 
@@ -118,6 +577,11 @@ public class MoviesControllerIntegrationTest {
                         .withStatus(500)
                         .withBody("MovieInfo Service unavailable")));
 
+        stubFor(get(urlPathEqualTo("/v1/reviews"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("review.json")));
+
         webTestClient.get()
                 .uri("/v1/movies/{id}","1")
                 .exchange()
@@ -152,4 +616,27 @@ public class MoviesControllerIntegrationTest {
 
         WireMock.verify(3, getRequestedFor(urlPathEqualTo("/v1/reviews")));
     }
+
+    @Test
+    void retrieveMovieId_reviews_circuitOpen() {
+
+        stubFor(get(urlEqualTo("/v1/movieinfos/id/1"))
+                .willReturn(aResponse()
+                        .withHeader("Content-Type","application/json")
+                        .withBodyFile("movieinfo.json")));
+
+        var circuitBreaker = circuitBreakerRegistry.circuitBreaker("reviews");
+        circuitBreaker.transitionToForcedOpenState();
+        try {
+            webTestClient.get()
+                    .uri("/v1/movies/{id}","1")
+                    .exchange()
+                    .expectStatus()
+                    .isEqualTo(503);
+        } finally {
+            circuitBreaker.reset();
+        }
+
+        WireMock.verify(0, getRequestedFor(urlPathEqualTo("/v1/reviews")));
+    }
 }
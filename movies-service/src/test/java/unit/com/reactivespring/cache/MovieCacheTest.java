@@ -0,0 +1,111 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.client.Conditional;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.MoviesInfoClientException;
+import com.reactivespring.exception.MoviesInfoServerException;
+import com.reactivespring.util.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieCacheTest {
+
+    MutableClock clock = new MutableClock();
+    StalenessPolicy policy = new StalenessPolicy(Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofHours(1));
+    MovieCache movieCache = new MovieCache(true, 100, policy, policy, new SimpleMeterRegistry(), clock);
+
+    AtomicInteger fetches = new AtomicInteger();
+
+    Mono<Conditional<MovieInfo>> fetch(String name) {
+        return Mono.fromSupplier(() -> {
+            fetches.incrementAndGet();
+            return new Conditional<>(new MovieInfo("1", name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")),
+                    "\"" + name.length() + "\"");
+        });
+    }
+
+    @Test
+    void freshValueIsServedWithoutFetching() {
+        movieCache.movieInfo("1", eTag -> fetch("Batman Begins")).block();
+        clock.advance(Duration.ofSeconds(30));
+
+        StepVerifier.create(movieCache.movieInfo("1", eTag -> fetch("Batman Begins Remastered")))
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void staleValueIsServedWhileRevalidating() {
+        movieCache.movieInfo("1", eTag -> fetch("Batman Begins")).block();
+        clock.advance(Duration.ofMinutes(5));
+
+        StepVerifier.create(movieCache.movieInfo("1", eTag -> fetch("Batman Begins Remastered")))
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+        StepVerifier.create(movieCache.movieInfo("1", eTag -> fetch("unused")))
+                .assertNext(movieInfo -> assertEquals("Batman Begins Remastered", movieInfo.getName()))
+                .verifyComplete();
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void lastGoodCopyIsServedOnServerError() {
+        movieCache.movieInfo("1", eTag -> fetch("Batman Begins")).block();
+        clock.advance(Duration.ofMinutes(30));
+
+        StepVerifier.create(movieCache.movieInfo("1", eTag -> Mono.error(new MoviesInfoServerException("unavailable"))))
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+
+        clock.advance(Duration.ofHours(1));
+        StepVerifier.create(movieCache.movieInfo("1", eTag -> Mono.error(new MoviesInfoServerException("unavailable"))))
+                .expectError(MoviesInfoServerException.class)
+                .verify();
+    }
+
+    @Test
+    void clientErrorIsNotMaskedAndEvictsTheEntry() {
+        movieCache.movieInfo("1", eTag -> fetch("Batman Begins")).block();
+        clock.advance(Duration.ofMinutes(30));
+
+        StepVerifier.create(movieCache.movieInfo("1", eTag -> Mono.error(new MoviesInfoClientException("gone", 404))))
+                .expectError(MoviesInfoClientException.class)
+                .verify();
+        StepVerifier.create(movieCache.movieInfo("1", eTag -> fetch("Batman Begins")))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void notModifiedRenewsTheCachedValue() {
+        movieCache.movieInfo("1", eTag -> fetch("Batman Begins")).block();
+        clock.advance(Duration.ofMinutes(30));
+
+        var sentETag = new AtomicReference<String>();
+        StepVerifier.create(movieCache.movieInfo("1", eTag -> {
+                    sentETag.set(eTag);
+                    return Mono.just(Conditional.<MovieInfo>notModified(eTag));
+                }))
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+        assertEquals("\"13\"", sentETag.get());
+
+        clock.advance(Duration.ofSeconds(30));
+        StepVerifier.create(movieCache.movieInfo("1", eTag -> fetch("unused")))
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+        assertEquals(1, fetches.get());
+    }
+}
@@ -0,0 +1,76 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.client.Conditional;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.Review;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieInfoCacheRefresherTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    StalenessPolicy policy = new StalenessPolicy(Duration.ofMinutes(1), Duration.ofMinutes(10), Duration.ofHours(1));
+    MovieInfoCache movieInfoCache = new MovieInfoCache(true, 100, Duration.ofMinutes(10), meterRegistry);
+    MovieCache movieCache = new MovieCache(true, 100, policy, policy, meterRegistry, Clock.systemUTC());
+    MovieInfoCacheRefresher refresher = new MovieInfoCacheRefresher(movieInfoCache, movieCache, null);
+
+    String currentName = "Batman Begins";
+
+    static MovieInfo movieInfo(String movieInfoId, String name) {
+        return new MovieInfo(movieInfoId, name, 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15"));
+    }
+
+    Mono<MovieInfo> movieInfo(String movieId) {
+        return movieCache.movieInfo(movieId, eTag -> movieInfoCache.get(movieId, id -> Mono.just(movieInfo(id, currentName)))
+                .map(movieInfo -> new Conditional<>(movieInfo, "\"v1\"")));
+    }
+
+    @Test
+    void feedEventIsNotHiddenByTheMovieCache() {
+        movieInfo("1").block();
+
+        refresher.apply(new MovieInfoEvent(MovieInfoEvent.Type.UPDATE, movieInfo("1", "Batman Begins Remastered")));
+
+        StepVerifier.create(movieInfo("1"))
+                .assertNext(movieInfo -> assertEquals("Batman Begins Remastered", movieInfo.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    void deleteEvictsTheMovieFromBothCaches() {
+        movieInfo("1").block();
+        movieCache.reviews("1", eTag -> Mono.just(new Conditional<>(List.of(new Review("r1", 1L, "Awesome", 9.0)), "\"r1\""))).block();
+        currentName = "Batman Begins Remastered";
+
+        refresher.apply(new MovieInfoEvent(MovieInfoEvent.Type.DELETE, new MovieInfo("1", null, null, null, null)));
+
+        StepVerifier.create(movieInfo("1"))
+                .assertNext(movieInfo -> assertEquals("Batman Begins Remastered", movieInfo.getName()))
+                .verifyComplete();
+        StepVerifier.create(movieCache.reviews("1", eTag -> Mono.just(new Conditional<>(List.<Review>of(), null))))
+                .assertNext(reviews -> assertEquals(List.of(), reviews))
+                .verifyComplete();
+    }
+
+    @Test
+    void reconnectDropsTheMovieInfosOfBothCaches() {
+        movieInfo("1").block();
+        currentName = "Batman Begins Remastered";
+
+        refresher.invalidateAll();
+
+        StepVerifier.create(movieInfo("1"))
+                .assertNext(movieInfo -> assertEquals("Batman Begins Remastered", movieInfo.getName()))
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,60 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MovieInfoCacheTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    MovieInfoCache movieInfoCache = new MovieInfoCache(true, 100, Duration.ofMinutes(10), meterRegistry);
+
+    AtomicInteger loads = new AtomicInteger();
+
+    Mono<MovieInfo> load(String movieId) {
+        loads.incrementAndGet();
+        return Mono.just(new MovieInfo(movieId, "Batman Begins", 2005, List.of("Christian Bale", "Michael Cane"), LocalDate.parse("2005-06-15")));
+    }
+
+    @Test
+    void secondReadIsServedFromCache() {
+        StepVerifier.create(movieInfoCache.get("1", this::load)).expectNextCount(1).verifyComplete();
+        StepVerifier.create(movieInfoCache.get("1", this::load)).expectNextCount(1).verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    void refreshOnlyReplacesCachedEntries() {
+        movieInfoCache.get("1", this::load).block();
+
+        movieInfoCache.refresh(new MovieInfo("1", "Batman Begins Remastered", 2005, List.of("Christian Bale"), LocalDate.parse("2005-06-15")));
+        movieInfoCache.refresh(new MovieInfo("2", "The Dark Knight", 2008, List.of("Christian Bale"), LocalDate.parse("2008-07-18")));
+
+        StepVerifier.create(movieInfoCache.get("1", this::load))
+                .assertNext(movieInfo -> assertEquals("Batman Begins Remastered", movieInfo.getName()))
+                .verifyComplete();
+        StepVerifier.create(movieInfoCache.get("2", this::load))
+                .assertNext(movieInfo -> assertEquals("Batman Begins", movieInfo.getName()))
+                .verifyComplete();
+    }
+
+    @Test
+    void invalidatedEntryIsLoadedAgain() {
+        movieInfoCache.get("1", this::load).block();
+        movieInfoCache.invalidate("1");
+        movieInfoCache.get("1", this::load).block();
+
+        assertEquals(2, loads.get());
+    }
+}
@@ -0,0 +1,59 @@
+package com.reactivespring.limiter;
+
+import com.netflix.concurrency.limits.limit.FixedLimit;
+import com.netflix.concurrency.limits.limiter.SimpleLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrencyLimitFilterTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    SimpleLimiter<Void> limiter = SimpleLimiter.newBuilder().limit(FixedLimit.of(1)).build();
+    ConcurrencyLimitFilter filter = new ConcurrencyLimitFilter(true, limiter, Duration.ofSeconds(2),
+            List.of("/v1/movies/*/stream"), meterRegistry);
+
+    @Test
+    void rejectsRequestsAboveTheLimit() {
+        var inFlight = Sinks.empty();
+        var first = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/1"));
+        var subscription = filter.filter(first, exchange -> inFlight.asMono().then()).subscribe();
+
+        var second = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/2"));
+        filter.filter(second, exchange -> Mono.empty()).block();
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, second.getResponse().getStatusCode());
+        assertEquals("2", second.getResponse().getHeaders().getFirst("Retry-After"));
+        assertEquals(1.0, meterRegistry.get("movies.limiter.rejected").counter().count());
+
+        inFlight.tryEmitEmpty();
+        subscription.dispose();
+        var third = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/3"));
+        filter.filter(third, exchange -> Mono.empty()).block();
+        assertNull(third.getResponse().getStatusCode());
+        assertEquals(0, limiter.getInflight());
+    }
+
+    @Test
+    void excludedAndOtherPathsAreNotLimited() {
+        limiter.acquire(null);
+
+        var stream = MockServerWebExchange.from(MockServerHttpRequest.get("/v1/movies/1/stream"));
+        filter.filter(stream, exchange -> Mono.empty()).block();
+        var actuator = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health"));
+        filter.filter(actuator, exchange -> Mono.empty()).block();
+
+        assertNull(stream.getResponse().getStatusCode());
+        assertNull(actuator.getResponse().getStatusCode());
+        assertEquals(1.0, meterRegistry.get("movies.limiter.limit").gauge().value());
+    }
+}
@@ -0,0 +1,105 @@
+package com.reactivespring.loadbalancer;
+
+import com.reactivespring.util.MutableClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LoadBalancerTest {
+
+    MutableClock clock = new MutableClock();
+    LoadBalancer loadBalancer = new LoadBalancer("moviesInfo", List.of("http://host-a:8080", "http://host-b:8080"),
+            3, Duration.ofSeconds(1), Duration.ofSeconds(30), 50, new SimpleMeterRegistry(), clock);
+
+    ServiceInstance instance(String host) {
+        return loadBalancer.getInstances().stream()
+                .filter(instance -> instance.getUri().getHost().equals(host))
+                .findFirst().orElseThrow();
+    }
+
+    @Test
+    void prefersInstanceWithFewerOutstandingRequests() {
+        instance("host-a").start();
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("host-b", loadBalancer.choose().getUri().getHost());
+        }
+    }
+
+    @Test
+    void ejectsInstanceAfterConsecutiveFailuresUntilEjectionTimeEnds() {
+        var hostA = instance("host-a");
+        for (int i = 0; i < 3; i++) {
+            loadBalancer.record(hostA, Duration.ofMillis(10), true);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals("host-b", loadBalancer.choose().getUri().getHost());
+        }
+
+        clock.advance(Duration.ofSeconds(31));
+        assertFalse(hostA.isEjected(clock.millis()));
+    }
+
+    @Test
+    void slowCallsCountAsFailures_andEjectionIsCapped() {
+        var hostA = instance("host-a");
+        var hostB = instance("host-b");
+        for (int i = 0; i < 3; i++) {
+            loadBalancer.record(hostA, Duration.ofSeconds(2), false);
+            loadBalancer.record(hostB, Duration.ofSeconds(2), false);
+        }
+
+        // at most 50% of the two instances may be ejected at once
+        assertTrue(hostA.isEjected(clock.millis()));
+        assertFalse(hostB.isEjected(clock.millis()));
+    }
+
+    @Test
+    void exchangeFilter_routesToInstance_andRecords5xx() {
+        var requests = new ArrayList<URI>();
+        var filter = loadBalancer.exchangeFilter();
+        var request = ClientRequest.create(HttpMethod.GET,
+                URI.create("http://localhost:8080/v1/movieinfos/id/1?x=1")).build();
+
+        for (int i = 0; i < 3; i++) {
+            filter.filter(request, clientRequest -> {
+                requests.add(clientRequest.url());
+                return Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build());
+            }).block();
+        }
+
+        assertTrue(requests.stream().allMatch(uri -> uri.getPath().equals("/v1/movieinfos/id/1")
+                && uri.getQuery().equals("x=1") && uri.getHost().startsWith("host-")));
+        assertEquals(0, instance("host-a").outstanding() + instance("host-b").outstanding());
+    }
+
+    @Test
+    void exchangeFilter_cancelledCallsOnlyReleaseTheirSlot() {
+        var filter = loadBalancer.exchangeFilter();
+        var request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost:8080/v1/movieinfos/id/1")).build();
+
+        for (int i = 0; i < 6; i++) {
+            // like a lost hedge, the caller gives up before the instance answers
+            filter.filter(request, clientRequest -> Mono.<ClientResponse>never())
+                    .timeout(Duration.ofMillis(10))
+                    .onErrorResume(TimeoutException.class, ex -> Mono.empty())
+                    .block();
+        }
+
+        assertFalse(instance("host-a").isEjected(clock.millis()) || instance("host-b").isEjected(clock.millis()));
+        assertEquals(0, instance("host-a").outstanding() + instance("host-b").outstanding());
+    }
+}
@@ -0,0 +1,51 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.reactivespring.domain.Movie;
+import com.reactivespring.util.JsonBytes;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieJsonTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    @Test
+    void envelope() throws Exception {
+        var movieInfo = "{\"movieInfoId\":\"1\",\"name\":\"Batman Begins\",\"year\":2005,\"cast\":[\"Christian Bale\"],\"release_date\":\"2005-06-15\"}";
+        var reviews = "[{\"reviewId\":\"1\",\"movieInfoId\":1,\"comment\":\"Awesome Movie\",\"rating\":9.0}]";
+
+        var json = MovieJson.envelope(DefaultDataBufferFactory.sharedInstance,
+                movieInfo.getBytes(StandardCharsets.UTF_8), reviews.getBytes(StandardCharsets.UTF_8), false);
+
+        var movie = objectMapper.readValue(json.toString(StandardCharsets.UTF_8), Movie.class);
+        assertEquals("Batman Begins", movie.getMovieInfo().getName());
+        assertEquals(1, movie.getReviewList().size());
+        assertFalse(movie.isReviewsPartial());
+    }
+
+    @Test
+    void envelope_partialReviews() throws Exception {
+        var movieInfo = "{\"movieInfoId\":\"1\",\"name\":\"Batman Begins\"}";
+
+        var json = MovieJson.envelope(DefaultDataBufferFactory.sharedInstance,
+                movieInfo.getBytes(StandardCharsets.UTF_8), JsonBytes.EMPTY_ARRAY, true);
+
+        var movie = objectMapper.readValue(json.toString(StandardCharsets.UTF_8), Movie.class);
+        assertTrue(movie.getReviewList().isEmpty());
+        assertTrue(movie.isReviewsPartial());
+    }
+
+    @Test
+    void isEnclosed() {
+        assertTrue(JsonBytes.isEnclosed(" {\"name\":\"x\"}\n".getBytes(StandardCharsets.UTF_8), '{', '}'));
+        assertFalse(JsonBytes.isEnclosed("{\"name\":".getBytes(StandardCharsets.UTF_8), '{', '}'));
+        assertFalse(JsonBytes.isEnclosed("Not Found".getBytes(StandardCharsets.UTF_8), '[', ']'));
+        assertFalse(JsonBytes.isEnclosed(new byte[0], '[', ']'));
+    }
+}
@@ -0,0 +1,103 @@
+package com.reactivespring.util;
+
+import com.reactivespring.exception.MoviesInfoClientException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HedgingTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void fastAttemptIsNotHedged() {
+        var hedging = new Hedging("test", true, 0.95, Duration.ofMillis(50), 16, meterRegistry);
+        var attempts = new AtomicInteger();
+
+        StepVerifier.withVirtualTime(() -> hedging.hedge(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.just("movie").delayElement(Duration.ofMillis(10));
+                }))
+                .thenAwait(Duration.ofMillis(10))
+                .expectNext("movie")
+                .verifyComplete();
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    void slowAttemptIsHedgedAndTheLoserCancelled() {
+        var hedging = new Hedging("test", true, 0.95, Duration.ofMillis(50), 16, meterRegistry);
+        var attempts = new AtomicInteger();
+        var cancelled = new AtomicInteger();
+
+        StepVerifier.withVirtualTime(() -> hedging.hedge(() -> {
+                    var slow = attempts.incrementAndGet() == 1;
+                    return Mono.just(slow ? "slow" : "hedged")
+                            .delayElement(Duration.ofMillis(slow ? 1000 : 10))
+                            .doOnCancel(cancelled::incrementAndGet);
+                }))
+                .thenAwait(Duration.ofMillis(60))
+                .expectNext("hedged")
+                .verifyComplete();
+
+        assertEquals(2, attempts.get());
+        assertEquals(1, cancelled.get());
+        assertEquals(1.0, meterRegistry.counter("movies.client.hedged", "client", "test").count());
+    }
+
+    @Test
+    void failedHedgeDoesNotCancelTheSlowAttempt() {
+        var hedging = new Hedging("test", true, 0.95, Duration.ofMillis(50), 16, meterRegistry);
+        var attempts = new AtomicInteger();
+
+        StepVerifier.withVirtualTime(() -> hedging.hedge(() -> attempts.incrementAndGet() == 1
+                        ? Mono.just("slow").delayElement(Duration.ofMillis(200))
+                        : Mono.<String>error(new IllegalStateException("503")).delaySubscription(Duration.ofMillis(10))))
+                .thenAwait(Duration.ofMillis(200))
+                .expectNext("slow")
+                .verifyComplete();
+
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    void fastErrorIsPassedOnWithoutHedging() {
+        var hedging = new Hedging("test", true, 0.95, Duration.ofMillis(50), 16, meterRegistry);
+        var attempts = new AtomicInteger();
+
+        StepVerifier.withVirtualTime(() -> hedging.hedge(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.<String>error(new MoviesInfoClientException("There is no MovieInfo", 404))
+                            .delaySubscription(Duration.ofMillis(5));
+                }))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(5))
+                .expectError(MoviesInfoClientException.class)
+                .verify(Duration.ofSeconds(1));
+
+        assertEquals(1, attempts.get());
+        assertEquals(0.0, meterRegistry.counter("movies.client.hedged", "client", "test").count());
+    }
+
+    @Test
+    void bothAttemptsFailingFailsWithTheFirstAttemptsError() {
+        var hedging = new Hedging("test", true, 0.95, Duration.ofMillis(50), 16, meterRegistry);
+        var attempts = new AtomicInteger();
+
+        StepVerifier.withVirtualTime(() -> hedging.hedge(() -> {
+                    var attempt = attempts.incrementAndGet();
+                    return Mono.<String>error(new IllegalStateException("attempt " + attempt))
+                            .delaySubscription(Duration.ofMillis(attempt == 1 ? 100 : 10));
+                }))
+                .thenAwait(Duration.ofMillis(100))
+                .expectErrorSatisfies(ex -> assertEquals("attempt 1", ex.getMessage()))
+                .verify();
+    }
+}
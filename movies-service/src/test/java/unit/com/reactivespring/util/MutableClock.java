@@ -0,0 +1,32 @@
+package com.reactivespring.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+// a clock the test moves by hand, for anything that ages by wall clock time
+public class MutableClock extends Clock {
+
+    private Instant instant = Instant.parse("2024-01-01T00:00:00Z");
+
+    public void advance(Duration duration) {
+        instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return instant;
+    }
+}
@@ -0,0 +1,34 @@
+package com.reactivespring.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryBudgetTest {
+
+    @Test
+    void retriesAreCappedToAShareOfRequests() {
+        var retryBudget = new RetryBudget(0.2, 0, 1);
+        retryBudget.recordRetry();
+        assertFalse(retryBudget.canRetry());
+
+        for (int i = 0; i < 5; i++) {
+            retryBudget.recordRequest();
+        }
+        assertTrue(retryBudget.canRetry());
+        retryBudget.recordRetry();
+        assertFalse(retryBudget.canRetry());
+    }
+
+    @Test
+    void balanceNeverExceedsTheCap() {
+        var retryBudget = new RetryBudget(1, 0, 2);
+        for (int i = 0; i < 10; i++) {
+            retryBudget.recordRequest();
+        }
+        retryBudget.recordRetry();
+        retryBudget.recordRetry();
+        assertFalse(retryBudget.canRetry());
+    }
+}
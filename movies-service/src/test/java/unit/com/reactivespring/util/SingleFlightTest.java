@@ -0,0 +1,104 @@
+package com.reactivespring.util;
+
+import com.reactivespring.deadline.Deadline;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    SingleFlight<String, String> singleFlight = new SingleFlight<>("test", meterRegistry);
+
+    @Test
+    void concurrentCallsShareOneExecution() {
+        var subscriptions = new AtomicInteger();
+        Sinks.One<String> downstream = Sinks.one();
+        var call = downstream.asMono().doOnSubscribe(s -> subscriptions.incrementAndGet());
+
+        var first = singleFlight.execute("1", () -> call).toFuture();
+        var second = singleFlight.execute("1", () -> call).toFuture();
+        downstream.tryEmitValue("movie");
+
+        assertEquals("movie", first.join());
+        assertEquals("movie", second.join());
+        assertEquals(1, subscriptions.get());
+        assertEquals(1.0, meterRegistry.counter("movies.client.singleflight.coalesced", "client", "test").count());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void errorIsSharedAndNotCached() {
+        var subscriptions = new AtomicInteger();
+        var call = Mono.<String>error(new IllegalStateException("boom"))
+                .doOnSubscribe(s -> subscriptions.incrementAndGet());
+
+        StepVerifier.create(singleFlight.execute("1", () -> call))
+                .expectError(IllegalStateException.class)
+                .verify();
+        StepVerifier.create(singleFlight.execute("1", () -> Mono.just("movie")))
+                .expectNext("movie")
+                .verifyComplete();
+
+        assertEquals(1, subscriptions.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void cancellationOfAllCallersReleasesTheKey() {
+        var cancelled = new AtomicInteger();
+        var call = Mono.<String>never().doOnCancel(cancelled::incrementAndGet);
+
+        var first = singleFlight.execute("1", () -> call).subscribe();
+        var second = singleFlight.execute("1", () -> call).subscribe();
+        first.dispose();
+        assertEquals(0, cancelled.get());
+        second.dispose();
+
+        assertEquals(1, cancelled.get());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    void everyCallerIsHeldToItsOwnDeadline() {
+        Sinks.One<String> downstream = Sinks.one();
+        var sharedCallDeadlines = new ArrayList<Duration>();
+        Supplier<Mono<String>> call = () -> Mono.deferContextual(contextView -> {
+            sharedCallDeadlines.add(Deadline.from(contextView).orElseThrow().remaining());
+            return downstream.asMono();
+        });
+
+        var shortDeadline = singleFlight.execute("1", call)
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofMillis(50))))
+                .toFuture();
+        // a longer budget does not join the shorter call, it starts the one later callers share
+        var longDeadline = singleFlight.execute("1", call)
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(10))))
+                .toFuture();
+        var joiner = singleFlight.execute("1", call)
+                .contextWrite(Context.of(Deadline.class, Deadline.after(Duration.ofSeconds(5))))
+                .toFuture();
+
+        var shortFailure = assertThrows(CompletionException.class, shortDeadline::join);
+        assertInstanceOf(TimeoutException.class, shortFailure.getCause());
+        downstream.tryEmitValue("movie");
+
+        assertEquals("movie", longDeadline.join());
+        assertEquals("movie", joiner.join());
+        assertEquals(2, sharedCallDeadlines.size());
+        assertTrue(sharedCallDeadlines.get(1).compareTo(Duration.ofSeconds(5)) > 0);
+        assertEquals(1.0, meterRegistry.counter("movies.client.singleflight.coalesced", "client", "test").count());
+    }
+}